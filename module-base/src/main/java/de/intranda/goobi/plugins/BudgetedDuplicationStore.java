@@ -0,0 +1,139 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import ugh.dl.Fileformat;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+
+/**
+ * DuplicationStore that lets all database writes of another DuplicationStore wait for a WriteBudget. The METS file is not part of the budget.
+ */
+class BudgetedDuplicationStore implements DuplicationStore {
+
+    private final DuplicationStore store;
+    private final WriteBudget budget;
+    private final RunMetrics metrics;
+
+    BudgetedDuplicationStore(DuplicationStore store, WriteBudget budget, RunMetrics metrics) {
+        this.store = store;
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Step reloadStep(Step step) {
+        // reads are not part of the budget
+        return store.reloadStep(step);
+    }
+
+    @Override
+    public void saveStep(Step step) throws DAOException {
+        boolean permitted = acquire();
+        try {
+            store.saveStep(step);
+        } finally {
+            release(permitted);
+        }
+    }
+
+    @Override
+    public void deleteStep(Step step) throws DAOException {
+        boolean permitted = acquire();
+        try {
+            store.deleteStep(step);
+        } finally {
+            release(permitted);
+        }
+    }
+
+    @Override
+    public void saveProcessProperty(Processproperty property) {
+        boolean permitted = acquire();
+        try {
+            store.saveProcessProperty(property);
+        } finally {
+            release(permitted);
+        }
+    }
+
+    @Override
+    public void saveProperty(GoobiProperty property) {
+        boolean permitted = acquire();
+        try {
+            store.saveProperty(property);
+        } finally {
+            release(permitted);
+        }
+    }
+
+    @Override
+    public void deleteProperty(GoobiProperty property) {
+        boolean permitted = acquire();
+        try {
+            store.deleteProperty(property);
+        } finally {
+            release(permitted);
+        }
+    }
+
+    @Override
+    public Fileformat readMetadataFile(Process process) throws ReadException, IOException, SwapException, PreferencesException {
+        return store.readMetadataFile(process);
+    }
+
+    @Override
+    public void writeMetadataFile(Process process, Fileformat fileformat) throws WriteException, PreferencesException, IOException, SwapException {
+        store.writeMetadataFile(process, fileformat);
+    }
+
+    @Override
+    public long getMetadataFileSize(Process process) {
+        return store.getMetadataFileSize(process);
+    }
+
+    /**
+     * wait for the budget and record the time spent waiting
+     * 
+     * @return true if a permit was taken that must be released after the write
+     */
+    private boolean acquire() {
+        long start = System.nanoTime();
+        boolean permitted = budget.acquire();
+        metrics.addThrottleTime(System.nanoTime() - start);
+        return permitted;
+    }
+
+    private void release(boolean permitted) {
+        if (permitted) {
+            budget.release();
+        }
+    }
+}
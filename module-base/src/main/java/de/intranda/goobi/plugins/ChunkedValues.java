@@ -0,0 +1,69 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Groups consecutive parts into chunks of a fixed size. Each chunk is returned as one string, in which its parts are joined by the input
+ * separator, so that a chunk can be split again by downstream steps.
+ */
+public class ChunkedValues implements Iterable<String> {
+
+    private final Iterable<String> parts;
+    private final int chunkSize;
+    private final String separator;
+
+    /**
+     * 
+     * @param parts parts that shall be grouped
+     * @param chunkSize maximum number of parts per chunk, at least 1
+     * @param separator separator that shall be used to join the parts of one chunk
+     */
+    public ChunkedValues(Iterable<String> parts, int chunkSize, String separator) {
+        this.parts = parts;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.separator = separator;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> it = parts.iterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                StringBuilder chunk = new StringBuilder(it.next());
+                for (int i = 1; i < chunkSize && it.hasNext(); ++i) {
+                    chunk.append(separator).append(it.next());
+                }
+                return chunk.toString();
+            }
+        };
+    }
+}
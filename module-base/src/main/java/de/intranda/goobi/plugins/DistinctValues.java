@@ -0,0 +1,149 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import lombok.Getter;
+
+/**
+ * Drops parts that were already returned before or that already exist. Only a 64-bit hash of each part is kept, so that large lists do not need
+ * to be held in memory twice. Two different parts are only taken for the same one if their hashes collide, which is negligible for lists of
+ * realistic sizes.
+ */
+public class DistinctValues implements Iterable<String> {
+
+    private final Iterable<String> parts;
+    // true if parts that occur more than once shall only be returned the first time
+    private final boolean dropRepeated;
+    // true if parts shall be compared without surrounding whitespace, with inner whitespace collapsed and ignoring the case
+    private final boolean normalized;
+    private final Collection<String> existingValues;
+
+    // numbers of dropped parts during the last complete iteration
+    @Getter
+    private int droppedRepeated;
+    @Getter
+    private int droppedExisting;
+
+    /**
+     * 
+     * @param parts parts that shall be filtered
+     * @param dropRepeated true if parts that occur more than once shall only be returned the first time
+     * @param normalized true if parts shall be compared after normalization, false if they must match exactly
+     * @param existingValues values that already exist and shall not be returned at all, may be null
+     */
+    public DistinctValues(Iterable<String> parts, boolean dropRepeated, boolean normalized, Collection<String> existingValues) {
+        this.parts = parts;
+        this.dropRepeated = dropRepeated;
+        this.normalized = normalized;
+        this.existingValues = existingValues == null ? Collections.emptyList() : existingValues;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> it = parts.iterator();
+        LongHashSet existing = new LongHashSet();
+        for (String value : existingValues) {
+            existing.add(hash(value));
+        }
+        LongHashSet seen = new LongHashSet();
+
+        return new Iterator<String>() {
+            private String nextPart;
+            private int repeated;
+            private int alreadyExisting;
+
+            @Override
+            public boolean hasNext() {
+                while (nextPart == null && it.hasNext()) {
+                    String part = it.next();
+                    long hash = hash(part);
+                    if (existing.contains(hash)) {
+                        ++alreadyExisting;
+                    } else if (dropRepeated && !seen.add(hash)) {
+                        ++repeated;
+                    } else {
+                        nextPart = part;
+                    }
+                }
+                if (nextPart == null) {
+                    droppedRepeated = repeated;
+                    droppedExisting = alreadyExisting;
+                }
+                return nextPart != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String part = nextPart;
+                nextPart = null;
+                return part;
+            }
+        };
+    }
+
+    /**
+     * calculate a 64-bit FNV-1a hash of the part, normalizing it on the fly if needed
+     * 
+     * @param part the part
+     * @return hash of the part
+     */
+    long hash(String part) {
+        long hash = 0xcbf29ce484222325L;
+        int start = 0;
+        int end = part.length();
+        if (normalized) {
+            while (start < end && Character.isWhitespace(part.charAt(start))) {
+                ++start;
+            }
+            while (end > start && Character.isWhitespace(part.charAt(end - 1))) {
+                --end;
+            }
+        }
+        boolean inWhitespace = false;
+        for (int i = start; i < end; ++i) {
+            char c = part.charAt(i);
+            if (normalized) {
+                if (Character.isWhitespace(c)) {
+                    inWhitespace = true;
+                    continue;
+                }
+                if (inWhitespace) {
+                    hash = (hash ^ ' ') * 0x100000001b3L;
+                    inWhitespace = false;
+                }
+                c = Character.toLowerCase(c);
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+        }
+        // mix the bits, so that the low bits used by LongHashSet depend on all characters
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
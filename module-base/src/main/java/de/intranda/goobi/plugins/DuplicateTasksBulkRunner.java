@@ -0,0 +1,235 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+
+import de.sub.goobi.helper.CloseStepHelper;
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.Prefs;
+
+/**
+ * Runs the plugin for many processes at once. The configuration and the rulesets are only loaded once and shared between all processes, which are
+ * processed on a bounded pool of workers. A failure of one process does not affect the others. Processes whose step is not waiting to be run are
+ * skipped, and the step is closed after a successful run, just like the workflow does for automatic steps.
+ */
+@Log4j2
+public class DuplicateTasksBulkRunner {
+
+    // title of the step that runs this plugin in each process
+    private final String stepTitle;
+    // maximum number of processes that are handled at the same time
+    private final int parallelism;
+
+    // shared rulesets, key is the ruleset id
+    private final Map<Integer, Prefs> rulesets = new ConcurrentHashMap<>();
+
+    /**
+     * 
+     * @param stepTitle title of the step that runs this plugin in each process
+     * @param parallelism maximum number of processes that are handled at the same time, at least 1
+     */
+    public DuplicateTasksBulkRunner(String stepTitle, int parallelism) {
+        this.stepTitle = stepTitle;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * run the plugin for all processes of a Goobi batch
+     * 
+     * @param batchId id of the batch
+     * @return aggregated results
+     */
+    public BulkResult runForBatch(int batchId) {
+        List<Integer> processIds = ProcessManager.getIdsForFilter("prozesse.batchID = " + batchId);
+        return runForProcesses(processIds);
+    }
+
+    /**
+     * run the plugin for all processes of the input list
+     * 
+     * @param processIds ids of the processes
+     * @return aggregated results
+     */
+    public BulkResult runForProcesses(List<Integer> processIds) {
+        BulkResult result = new BulkResult();
+        if (processIds == null || processIds.isEmpty()) {
+            return result;
+        }
+
+        Semaphore permits = new Semaphore(parallelism);
+        ExecutorService executor = createExecutor();
+        Map<Integer, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            for (Integer processId : processIds) {
+                Runnable task = () -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        result.addFailed(processId, "Bulk run was interrupted");
+                        return;
+                    }
+                    try {
+                        runForProcess(processId, result);
+                    } finally {
+                        permits.release();
+                    }
+                };
+                futures.put(processId, executor.submit(task));
+            }
+
+            for (Map.Entry<Integer, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    log.error("Bulk run failed for process " + entry.getKey(), e.getCause());
+                    result.addFailed(entry.getKey(), String.valueOf(e.getCause()));
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Bulk run was interrupted");
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("DuplicateTasks bulk run finished: " + result.getSuccessful().size() + " successful, " + result.getFailed().size() + " failed, "
+                + result.getSkipped().size() + " skipped");
+        return result;
+    }
+
+    /**
+     * run the plugin for a single process and close its step if the run was successful
+     * 
+     * @param processId id of the process
+     * @param result aggregated results, the outcome of this process is added to it
+     */
+    private void runForProcess(int processId, BulkResult result) {
+        Process process = ProcessManager.getProcessById(processId);
+        if (process == null) {
+            result.addFailed(processId, "Process not found");
+            return;
+        }
+
+        Step step = null;
+        for (Step s : process.getSchritte()) {
+            if (stepTitle.equals(s.getTitel())) {
+                step = s;
+                break;
+            }
+        }
+        if (step == null) {
+            result.addFailed(processId, "Step '" + stepTitle + "' not found");
+            return;
+        }
+        if (!isRunnable(step)) {
+            result.addSkipped(processId, "Step '" + stepTitle + "' is not waiting to be run, its status is " + step.getBearbeitungsstatusEnum());
+            return;
+        }
+
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        // the parsed configuration is cached by DuplicateTasksConfiguration itself
+        DuplicateTasksConfiguration config = DuplicateTasksConfiguration.get(plugin.getTitle(), step);
+        Prefs prefs = rulesets.computeIfAbsent(process.getRegelsatz().getId(), k -> process.getRegelsatz().getPreferences());
+
+        plugin.initialize(step, "", prefs, config);
+        PluginReturnValue ret = plugin.run();
+        if (ret == PluginReturnValue.ERROR) {
+            result.addFailed(processId, "Plugin run failed, see the process journal for details");
+            return;
+        }
+        // the plugin reads the step again while the process is locked, a dry run leaves the step open
+        if (ret == PluginReturnValue.FINISH && !CloseStepHelper.closeStep(plugin.getStep(), null)) {
+            result.addFailed(processId, "Failed to close the step '" + stepTitle + "'");
+            return;
+        }
+        result.addSuccessful(processId);
+    }
+
+    /**
+     * check if the workflow is waiting for the step to be run. Automatic steps that are open are not runnable, the workflow runs them on its own.
+     * 
+     * @param step the step that runs this plugin
+     * @return true if the step is in work or failed before, or if it is an open manual step
+     */
+    private boolean isRunnable(Step step) {
+        StepStatus status = step.getBearbeitungsstatusEnum();
+        return status == StepStatus.INWORK || status == StepStatus.ERROR || status == StepStatus.OPEN && !step.isTypAutomatisch();
+    }
+
+    /**
+     * use virtual threads where they are available, a fixed pool of platform threads otherwise
+     * 
+     * @return executor for the workers
+     */
+    private ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(parallelism);
+        }
+    }
+
+    /**
+     * aggregated results of a bulk run
+     */
+    public static class BulkResult {
+        @Getter
+        private final List<Integer> successful = Collections.synchronizedList(new ArrayList<>());
+        // key is the process id, value is a message describing the failure
+        @Getter
+        private final Map<Integer, String> failed = new ConcurrentHashMap<>();
+        // key is the process id, value is the reason why the process was not run
+        @Getter
+        private final Map<Integer, String> skipped = new ConcurrentHashMap<>();
+
+        private void addSuccessful(int processId) {
+            successful.add(processId);
+        }
+
+        private void addFailed(int processId, String error) {
+            failed.put(processId, error);
+        }
+
+        private void addSkipped(int processId, String reason) {
+            skipped.put(processId, reason);
+        }
+    }
+}
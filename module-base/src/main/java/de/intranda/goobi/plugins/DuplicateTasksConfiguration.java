@@ -0,0 +1,216 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Immutable configuration of the plugin for one project and step. The parsed configurations are cached and the cache is cleared as soon as the
+ * configuration file changes on disk.
+ */
+@Log4j2
+@Getter
+public class DuplicateTasksConfiguration {
+
+    // cached configurations, key is project title and step title
+    private static final Map<Pair<String, String>, DuplicateTasksConfiguration> CACHE = new ConcurrentHashMap<>();
+    // last modification time of the configuration file when the cache was filled
+    private static volatile long cachedLastModified = -1;
+
+    // false if the <property> is missing
+    private final boolean propertyConfigured;
+    // true if a run shall only calculate and log what it would create, without saving anything
+    private final boolean dryRun;
+    // name of the property holding value that shall be separated into smaller parts
+    private final String propertyName;
+    // separator that shall be used to separate the property value into smaller parts, by default \n
+    private final String propertySeparator;
+    // true if the separator is a regular expression, false if it shall be used literally
+    private final boolean separatorIsRegex;
+    // three options for valueSource: property | file | metadata.
+    // For property the value of the process property named propertyName is split.
+    // For file the content of the file propertyName in the process folder is split.
+    // For metadata every value of the metadata propertyName of the logical DocStruct is one part.
+    private final String valueSource;
+    // three options for deduplicate: none | exact | normalized.
+    // For exact only the first of identical parts is used, for normalized parts are also identical if they only differ in whitespace or case.
+    private final String deduplicate;
+    // true if parts that already exist as target properties or metadata of the process shall be skipped
+    private final boolean skipExisting;
+    // four options for targetType for now: person | metadata | property | json.
+    // For person and metadata, the changes will be written into the METS file.
+    // For property the changes will be saved as process's property.
+    // For json all changes will be saved as one JSON array in a single process's property.
+    private final String targetType;
+    // name of the new metadata's type or the new process property
+    private final String targetName;
+    // true if an index should be used as suffices to the names of all the new metadata as well as process properties, false otherwise
+    private final boolean useIndex;
+    // true if all entries shall be handled even if some of them fail, false if the run shall stop at the first failing entry
+    private final boolean continueOnError;
+    // number of threads that save the process properties in parallel if continueOnError is true
+    private final int parallelSaves;
+    // number of rows that may be written into the database per second, 0 if unlimited
+    private final int writeRowsPerSecond;
+    // number of database writes that may run at the same time, 0 if unlimited
+    private final int writeMaxInFlight;
+    // maximum number of seconds to wait for the lock of the process
+    private final int lockTimeout;
+    // true if a named lock of the database shall be held in addition to the lock inside of the JVM
+    private final boolean databaseLock;
+    // maximum number of connections that are held by database locks at the same time
+    private final int databaseLockConnections;
+    // true if a step duplication is needed, false otherwise
+    private final boolean stepDuplicationEnabled;
+    // name of the step that shall be duplicated, blank if the step following the current one shall be used
+    private final String stepToDuplicateName;
+    // id of the step that shall be duplicated, 0 if the step shall be found by its title
+    private final int stepToDuplicateId;
+    // regular expression matching the title of the step that shall be duplicated, null if the step shall be found by its name
+    private final Pattern stepToDuplicatePattern;
+    // true if a re-run shall only create, update or deactivate the duplicates and properties that changed, false if all shall be created again
+    private final boolean incremental;
+    // number of consecutive parts that are handled by one duplicated step
+    private final int chunkSize;
+    // maximum number of duplicates that shall be open at the same time, 0 if all duplicates shall be created at once
+    private final int window;
+    // title of the step that shall be opened as soon as all duplicates are closed, blank if there is none
+    private final String joinStepName;
+
+    /**
+     * parse the configuration block
+     * 
+     * @param config configuration block that matches the project and step
+     */
+    DuplicateTasksConfiguration(HierarchicalConfiguration config) {
+        HierarchicalConfiguration propertyConfig = null;
+        try {
+            propertyConfig = config.configurationAt("property");
+        } catch (IllegalArgumentException e) {
+            // the <property> is missing
+        }
+        propertyConfigured = propertyConfig != null;
+
+        if (propertyConfigured) {
+            propertyName = propertyConfig.getString("@name", "");
+            String separator = propertyConfig.getString("@separator", "\n");
+            propertySeparator = StringUtils.isBlank(separator) ? "\n" : separator;
+            separatorIsRegex = propertyConfig.getBoolean("@regex", false);
+            valueSource = propertyConfig.getString("@source", "property").toLowerCase();
+            deduplicate = propertyConfig.getString("@deduplicate", "none").toLowerCase();
+            skipExisting = propertyConfig.getBoolean("@skipExisting", false);
+
+            String propertyTarget = propertyConfig.getString("@target", "");
+            if (StringUtils.isBlank(propertyTarget) || !propertyTarget.contains(":")) {
+                targetType = "property";
+                targetName = propertyTarget;
+            } else {
+                String[] propertyTargetParts = propertyTarget.split(":");
+                targetType = propertyTargetParts[0];
+                targetName = propertyTargetParts[1];
+            }
+
+            useIndex = propertyConfig.getBoolean("@useIndex", true);
+
+        } else {
+            propertyName = "";
+            propertySeparator = "\n";
+            separatorIsRegex = false;
+            valueSource = "property";
+            deduplicate = "none";
+            skipExisting = false;
+            targetType = "property";
+            targetName = "";
+            useIndex = true;
+        }
+
+        dryRun = config.getBoolean("dryRun", false);
+        continueOnError = config.getBoolean("continueOnError", false);
+        parallelSaves = Math.max(1, config.getInt("continueOnError/@threads", 4));
+        writeRowsPerSecond = config.getInt("writeBudget/@rowsPerSecond", 0);
+        writeMaxInFlight = config.getInt("writeBudget/@maxInFlight", 0);
+        lockTimeout = config.getInt("lock/@timeout", 60);
+        databaseLock = config.getBoolean("lock/@database", false);
+        databaseLockConnections = Math.max(1, config.getInt("lock/@connections", 2));
+        stepDuplicationEnabled = config.getBoolean("stepToDuplicate/@enabled", true);
+        stepToDuplicateName = config.getString("stepToDuplicate", "");
+        stepToDuplicateId = config.getInt("stepToDuplicate/@id", 0);
+        String pattern = config.getString("stepToDuplicate/@pattern", "");
+        stepToDuplicatePattern = StringUtils.isBlank(pattern) ? null : Pattern.compile(pattern);
+        incremental = config.getBoolean("stepToDuplicate/@incremental", false);
+        chunkSize = config.getInt("stepToDuplicate/@chunkSize", 1);
+        window = config.getInt("stepToDuplicate/@window", 0);
+        joinStepName = config.getString("stepToDuplicate/@joinStep", "");
+    }
+
+    /**
+     * get the configuration for the project and title of the input step, it will only be parsed if it is not cached yet or if the configuration
+     * file has changed since it was cached
+     * 
+     * @param pluginTitle title of the plugin
+     * @param step the step that runs the plugin
+     * @return configuration
+     */
+    public static DuplicateTasksConfiguration get(String pluginTitle, Step step) {
+        long lastModified = getConfigurationFileLastModified(pluginTitle);
+        if (lastModified != cachedLastModified) {
+            CACHE.clear();
+            cachedLastModified = lastModified;
+        }
+
+        // titles may contain any character, so they are not joined into one string
+        Pair<String, String> key = Pair.of(step.getProzess().getProjekt().getTitel(), step.getTitel());
+        return CACHE.computeIfAbsent(key, k -> {
+            log.debug("parsing configuration for " + k);
+            SubnodeConfiguration config = ConfigPlugins.getProjectAndStepConfig(pluginTitle, step);
+            return new DuplicateTasksConfiguration(config);
+        });
+    }
+
+    /**
+     * 
+     * @param pluginTitle title of the plugin
+     * @return last modification time of the configuration file, or 0 if it can not be determined
+     */
+    private static long getConfigurationFileLastModified(String pluginTitle) {
+        Path path = Paths.get(ConfigurationHelper.getInstance().getConfigurationFolder(), "plugin_" + pluginTitle + ".xml");
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Collects the metrics of all runs of the plugin and publishes them via JMX.
+ */
+@Log4j2
+public final class DuplicateTasksMetrics implements DuplicateTasksMetricsMXBean {
+
+    public static final String OBJECT_NAME = "de.intranda.goobi.plugins:type=DuplicateTasks";
+
+    private static final DuplicateTasksMetrics INSTANCE = register(new DuplicateTasksMetrics());
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failedRuns = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong stepsCreated = new AtomicLong();
+    private final AtomicLong databaseWrites = new AtomicLong();
+    private final AtomicLong metsWrites = new AtomicLong();
+    private final AtomicLong metsBytesWritten = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong stepSaveTime = new AtomicLong();
+    private final AtomicLong propertySaveTime = new AtomicLong();
+    private final AtomicLong metsTime = new AtomicLong();
+
+    private DuplicateTasksMetrics() {
+    }
+
+    public static DuplicateTasksMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private static DuplicateTasksMetrics register(DuplicateTasksMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+            log.warn("Failed to register the metrics of the DuplicateTasks plugin via JMX", e);
+        }
+        return metrics;
+    }
+
+    /**
+     * add the metrics of a finished run to the totals
+     * 
+     * @param run metrics of the run
+     * @param successful true if the run was successful, false otherwise
+     */
+    void record(RunMetrics run, boolean successful) {
+        runs.incrementAndGet();
+        if (!successful) {
+            failedRuns.incrementAndGet();
+        }
+        entries.addAndGet(run.getEntries());
+        stepsCreated.addAndGet(run.getStepsCreated());
+        databaseWrites.addAndGet(run.getDatabaseWrites());
+        metsWrites.addAndGet(run.getMetsWrites());
+        metsBytesWritten.addAndGet(run.getMetsBytesWritten());
+        failures.addAndGet(run.getFailures());
+        totalTime.addAndGet(run.getElapsedTime());
+        stepSaveTime.addAndGet(run.getStepSaveTime());
+        propertySaveTime.addAndGet(run.getPropertySaveTime());
+        metsTime.addAndGet(run.getMetsTime());
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.get();
+    }
+
+    @Override
+    public long getFailedRuns() {
+        return failedRuns.get();
+    }
+
+    @Override
+    public long getEntries() {
+        return entries.get();
+    }
+
+    @Override
+    public long getStepsCreated() {
+        return stepsCreated.get();
+    }
+
+    @Override
+    public long getDatabaseWrites() {
+        return databaseWrites.get();
+    }
+
+    @Override
+    public long getMetsWrites() {
+        return metsWrites.get();
+    }
+
+    @Override
+    public long getMetsBytesWritten() {
+        return metsBytesWritten.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getTotalTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalTime.get());
+    }
+
+    @Override
+    public long getStepSaveTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stepSaveTime.get());
+    }
+
+    @Override
+    public long getPropertySaveTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(propertySaveTime.get());
+    }
+
+    @Override
+    public long getMetsTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metsTime.get());
+    }
+}
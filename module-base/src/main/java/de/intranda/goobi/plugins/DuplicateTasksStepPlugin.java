@@ -20,8 +20,12 @@
 package de.intranda.goobi.plugins;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 
 /**
  * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
@@ -43,17 +47,22 @@ import java.util.Arrays;
  */
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.configuration.HierarchicalConfiguration;
-import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.commons.lang3.StringUtils;
 import org.goobi.beans.GoobiProperty;
 import org.goobi.beans.Process;
 import org.goobi.beans.Processproperty;
 import org.goobi.beans.Step;
-import org.goobi.beans.User;
-import org.goobi.beans.Usergroup;
 import org.goobi.production.enums.LogType;
 import org.goobi.production.enums.PluginGuiType;
 import org.goobi.production.enums.PluginReturnValue;
@@ -61,18 +70,19 @@ import org.goobi.production.enums.PluginType;
 import org.goobi.production.enums.StepReturnValue;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
 
-import de.sub.goobi.config.ConfigPlugins;
 import de.sub.goobi.helper.Helper;
+import de.sub.goobi.helper.ScriptThreadWithoutHibernate;
 import de.sub.goobi.helper.enums.StepStatus;
 import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.helper.exceptions.SwapException;
-import de.sub.goobi.persistence.managers.PropertyManager;
-import de.sub.goobi.persistence.managers.StepManager;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
 import ugh.dl.DigitalDocument;
 import ugh.dl.DocStruct;
+import ugh.dl.DocStructType;
 import ugh.dl.Fileformat;
 import ugh.dl.Metadata;
 import ugh.dl.MetadataType;
@@ -97,90 +107,235 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
     private Process process;
     private int processId;
     private Prefs prefs;
-    // name of the property holding value that shall be separated into smaller parts
-    private String propertyName;
-    // property value that shall be separated into smaller parts
-    private String propertyValue;
-    // separator that shall be used to separate the property value into smaller parts, by default \n
-    private String propertySeparator;
-    // property parts after separation
-    private List<String> properties = new ArrayList<>();
+    // parsed configuration for the project and step
+    private DuplicateTasksConfiguration config;
+    // property parts after separation, they are only created while iterating
+    private Iterable<String> properties = new ArrayList<>();
+    // ids of the duplicates that were created by the last call of duplicateStepForEntries
+    private List<Integer> createdStepIds = new ArrayList<>();
+    // duplicates that were saved by the last call of duplicateStepForEntries, they are deleted again if the duplication fails
+    private List<Step> createdSteps = new ArrayList<>();
+    // process properties that were saved during the current run, they are deleted again if the duplication fails
+    private List<Processproperty> savedProperties = new ArrayList<>();
+    // lookup tables of the steps and properties of the process, built once per run
+    private ProcessIndex processIndex;
+    // filter of repeated and existing parts, null if no filter is configured
+    private DistinctValues distinctValues;
+    // parts that are read from a file, null if the parts are not read from a file
+    private PropertyValueSplitter valueFile;
+    // true if parts that already exist on the process are skipped
+    private boolean skipExisting;
+    // highest index that is already used by earlier runs, new indexes continue after it if existing parts are skipped
+    private int indexOffset;
     // Step that shall be duplicated by this plugin
     private Step stepToDuplicate;
-    // true if a step duplication is needed, false otherwise
-    private boolean stepDuplicationEnabled;
-    // three options for targetType for now: person | metadata | property.
-    // For person and metadata, the changes will be written into the METS file.
-    // For property the changes will be saved as process's property.
-    private String targetType;
-    // name of the new metadata's type or the new process property
-    private String targetName;
-    // true if an index should be used as suffices to the names of all the new metadata as well as process properties, false otherwise
-    private boolean useIndex;
+    // METS file loaded once per run, all new Metadata / Person objects are appended to it and it is written only once at the end
+    private Fileformat fileformat;
+    // logical DocStruct of the loaded METS file
+    private DocStruct logical;
+    // true if metadata were added to the loaded METS file, which is also loaded to read the values from
+    private boolean metadataChanged;
+    // names of the metadata types that would be created and how many of each, null if they are not validated yet
+    private Map<String, Integer> metadataTargets;
+    // true if all metadata are allowed on the logical DocStruct, null if this is not checked yet
+    private Boolean metadataTargetsAllowed;
+    // new process properties of the current run, they are saved together with the METS changes by saveEntries
+    private List<Processproperty> pendingProperties = new ArrayList<>();
+    // indexes of the entries the pending properties belong to
+    private List<Integer> pendingOrders = new ArrayList<>();
+    // persistence of steps, properties and the METS file
+    @Setter(AccessLevel.PACKAGE)
+    private DuplicationStore store = new GoobiDuplicationStore();
+    // counters and timers of the current run
+    private RunMetrics metrics = new RunMetrics();
+    // snapshot of the step that is duplicated, created once per run
+    private StepTemplate stepTemplate;
+    private Step templateStep;
+    // result of each entry of the current run
+    @Getter
+    private EntryReport report = new EntryReport();
+    // saves process properties in parallel if continueOnError is configured
+    private ExecutorService propertyExecutor;
+    // last error that was logged, used as reason of a failed entry
+    private String lastError;
+    // journal messages of the current run, written at the end of the run
+    private final JournalBuffer journal = new JournalBuffer();
 
     @Override
     public void initialize(Step step, String returnPath) {
+        // read parameters from correct block in configuration file
+        DuplicateTasksConfiguration config = DuplicateTasksConfiguration.get(title, step);
+        initialize(step, returnPath, step.getProzess().getRegelsatz().getPreferences(), config);
+    }
+
+    /**
+     * initialize the plugin with a configuration and a ruleset that are already loaded, used by DuplicateTasksBulkRunner to share them between
+     * many processes
+     * 
+     * @param step the step that runs this plugin
+     * @param returnPath
+     * @param prefs ruleset of the process
+     * @param config configuration that matches the project and step
+     */
+    void initialize(Step step, String returnPath, Prefs prefs, DuplicateTasksConfiguration config) {
         this.returnPath = returnPath;
         this.step = step;
+        this.config = config;
 
         process = step.getProzess();
         processId = process.getId();
-        prefs = process.getRegelsatz().getPreferences();
-
-        // read parameters from correct block in configuration file
-        SubnodeConfiguration config = ConfigPlugins.getProjectAndStepConfig(title, step);
+        this.prefs = prefs;
+        fileformat = null;
+        logical = null;
+        metadataChanged = false;
+        pendingProperties = new ArrayList<>();
+        pendingOrders = new ArrayList<>();
+        createdSteps = new ArrayList<>();
+        savedProperties = new ArrayList<>();
+        distinctValues = null;
+        closeValueFile();
+        valueFile = null;
+        indexOffset = 0;
+        metadataTargets = null;
+        metadataTargetsAllowed = null;
+        report = new EntryReport();
+        lastError = null;
+        stepTemplate = null;
+        templateStep = null;
+        metrics = new RunMetrics();
+        journal.clear();
+        processIndex = new ProcessIndex(process);
         log.info("DuplicateTasks step plugin initialized");
 
-        // initialize property
-        try {
-            HierarchicalConfiguration propertyConfig = config.configurationAt("property");
-            propertyName = propertyConfig.getString("@name", "");
-            propertySeparator = propertyConfig.getString("@separator", "\n");
-
-            String propertyTarget = propertyConfig.getString("@target", "");
-            if (StringUtils.isBlank(propertyTarget) || !propertyTarget.contains(":")) {
-                targetType = "property";
-                targetName = propertyTarget;
-            } else {
-                String[] propertyTargetParts = propertyTarget.split(":");
-                targetType = propertyTargetParts[0];
-                targetName = propertyTargetParts[1];
-            }
-
-            useIndex = propertyConfig.getBoolean("@useIndex", true);
-
-        } catch (IllegalArgumentException e) {
+        if (!config.isPropertyConfigured()) {
             // the <property> is missing
             String message = "The configuration for <property> is missing. Aborting...";
             logBoth(processId, LogType.ERROR, message);
             return;
         }
 
-        if (StringUtils.isBlank(propertySeparator)) {
-            propertySeparator = "\n";
+        Iterable<String> parts;
+        String joinSeparator;
+        if ("metadata".equals(config.getValueSource())) {
+            // every value of the metadata is one part already
+            parts = getMetadataValuesFromProcess(config.getPropertyName());
+            joinSeparator = "\n";
+        } else if ("file".equals(config.getValueSource())) {
+            // the file is read while the parts are iterated
+            Path file = getFileFromProcess(process, config.getPropertyName());
+            PropertyValueSplitter splitter = file == null ? new PropertyValueSplitter("", config.getPropertySeparator(), config.isSeparatorIsRegex())
+                    : new PropertyValueSplitter(file, config.getPropertySeparator(), config.isSeparatorIsRegex());
+            valueFile = splitter;
+            parts = splitter;
+            joinSeparator = splitter.getJoinSeparator();
+        } else {
+            // split the value of the property lazily
+            String propertyValue = getPropertyValueFromProcess(process, config.getPropertyName());
+            PropertyValueSplitter splitter = new PropertyValueSplitter(propertyValue, config.getPropertySeparator(), config.isSeparatorIsRegex());
+            parts = splitter;
+            joinSeparator = splitter.getJoinSeparator();
         }
 
-        // get the property value
-        propertyValue = getPropertyValueFromProcess(process, propertyName);
+        if (config.isStepDuplicationEnabled()) {
+            stepToDuplicate = getStepToDuplicate(config.getStepToDuplicateName());
+        }
 
-        // split propertyValue into props
-        String[] props = propertyValue.split(propertySeparator);
-        properties = new ArrayList<>();
-        for (String str : props) {
-            if (StringUtils.isNotBlank(str)) {
-                properties.add(str);
-            }
+        // the incremental and the windowed mode compare with the values that already exist on their own, and the index of a part in a JSON array
+        // must match the index in the title of its duplicated step
+        skipExisting = config.isSkipExisting()
+                && !(config.isStepDuplicationEnabled() && (config.isIncremental() || config.getWindow() > 0 || isJsonTarget()));
+        if (!"none".equals(config.getDeduplicate()) || skipExisting) {
+            distinctValues = new DistinctValues(parts, !"none".equals(config.getDeduplicate()), "normalized".equals(config.getDeduplicate()),
+                    skipExisting ? getExistingTargetValues() : null);
+            parts = distinctValues;
+        }
+        if (skipExisting) {
+            // the remaining parts must not get the indexes of the parts that were created before
+            indexOffset = getHighestExistingIndex();
         }
+        properties = parts;
 
-        SubnodeConfiguration stepDuplicationConfig = config.configurationAt("stepToDuplicate");
-        stepDuplicationEnabled = stepDuplicationConfig.getBoolean("@enabled", true);
+        if (config.isStepDuplicationEnabled() && config.getChunkSize() > 1) {
+            // each duplicated step gets a chunk of consecutive parts
+            properties = new ChunkedValues(parts, config.getChunkSize(), joinSeparator);
+        }
+    }
 
-        if (stepDuplicationEnabled) {
-            String stepToDuplicateName = config.getString("stepToDuplicate", "");
-            stepToDuplicate = getStepToDuplicate(process, stepToDuplicateName);
+    /**
+     * get the values that were already saved as target properties or metadata of the process
+     * 
+     * @return values of the process properties or metadata that use the target name, an empty list for persons
+     */
+    private List<String> getExistingTargetValues() {
+        String targetName = config.getTargetName();
+        if (StringUtils.isBlank(targetName)) {
+            targetName = config.isStepDuplicationEnabled() && stepToDuplicate != null ? stepToDuplicate.getTitel() : config.getPropertyName();
+        }
+
+        switch (config.getTargetType()) {
+            case "json":
+                return SplitPropertyValues.getValues(process, targetName);
+            case "metadata":
+                return getMetadataValuesFromProcess(targetName);
+            case "person":
+                return new ArrayList<>();
+            default:
+                // properties are named after the target name, optionally followed by an index
+                List<String> values = new ArrayList<>();
+                String nameNoSpace = targetName.replace(" ", "_");
+                String sourceNameNoSpace = config.getPropertyName().replace(" ", "_");
+                // several properties may share one name, so all of them are needed here
+                for (GoobiProperty property : process.getEigenschaften()) {
+                    String propName = property.getNormalizedTitle();
+                    boolean isSource = "property".equals(config.getValueSource()) && propName.equals(sourceNameNoSpace);
+                    if (!isSource && (propName.equals(nameNoSpace) || propName.startsWith(nameNoSpace + "_["))) {
+                        values.add(property.getWert());
+                    }
+                }
+                return values;
         }
     }
 
+    /**
+     * get the highest index that is already used in the titles of duplicated steps or in the names of the target properties or metadata
+     * 
+     * @return the highest index, or 0 if no index is used yet
+     */
+    private int getHighestExistingIndex() {
+        int highest = 0;
+        if (config.isStepDuplicationEnabled() && stepToDuplicate != null) {
+            for (Step existingStep : process.getSchritte()) {
+                highest = Math.max(highest, getOrderFromTitle(stepToDuplicate.getTitel(), existingStep.getTitel()));
+            }
+        }
+        if (!config.isUseIndex() && StringUtils.isNotBlank(config.getTargetName())) {
+            return highest;
+        }
+
+        String targetName = config.getTargetName();
+        if (StringUtils.isBlank(targetName)) {
+            targetName = config.isStepDuplicationEnabled() && stepToDuplicate != null ? stepToDuplicate.getTitel() : config.getPropertyName();
+        }
+        if ("property".equals(config.getTargetType())) {
+            for (GoobiProperty property : process.getEigenschaften()) {
+                highest = Math.max(highest, getOrderFromTitle(targetName, property.getTitel()));
+            }
+        } else if (isMetadataTarget() && logical != null) {
+            // the METS file is already loaded to find the existing values
+            List<Metadata> allMetadata = new ArrayList<>();
+            if (logical.getAllMetadata() != null) {
+                allMetadata.addAll(logical.getAllMetadata());
+            }
+            if (logical.getAllPersons() != null) {
+                allMetadata.addAll(logical.getAllPersons());
+            }
+            for (Metadata md : allMetadata) {
+                highest = Math.max(highest, getOrderFromTitle(targetName, md.getType().getName()));
+            }
+        }
+        return highest;
+    }
+
     /**
      * get the value of the property with the input name
      * 
@@ -189,43 +344,92 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
      * @return value of the property if it is found, otherwise an empty string
      */
     private String getPropertyValueFromProcess(Process process, String name) {
-        String nameNoSpace = name.replace(" ", "_");
-        List<GoobiProperty> properties = process.getEigenschaften();
-        for (GoobiProperty property : properties) {
-            String propName = property.getNormalizedTitle();
-            if (propName.equals(nameNoSpace)) {
-                return property.getWert();
+        GoobiProperty property = processIndex.getProperty(name);
+        return property == null ? "" : property.getWert();
+    }
+
+    /**
+     * get the file with the input name in the process folder. The file is not read here: its parts are read while they are iterated, so that large
+     * lists neither need to be stored in the database nor be held in memory.
+     * 
+     * @param process Goobi process
+     * @param name path of the file, relative to the process folder
+     * @return the file if it exists, otherwise null
+     */
+    private Path getFileFromProcess(Process process, String name) {
+        try {
+            Path path = Paths.get(process.getProcessDataDirectory(), name);
+            if (!Files.isRegularFile(path) || !Files.isReadable(path)) {
+                logBoth(processId, LogType.ERROR, "The file to read the values from does not exist or can not be read", path.toString());
+                return null;
             }
+            return path;
+
+        } catch (IOException | SwapException e) {
+            String message = "Failed to find the file to read the values from";
+            logBoth(processId, LogType.ERROR, message, name);
+            e.printStackTrace();
+            return null;
         }
+    }
 
-        return "";
+    /**
+     * get all values of the metadata with the input name from the logical DocStruct of the METS file
+     * 
+     * @param name name of the metadata's type
+     * @return values of all metadata of this type in the order of the METS file, blank values are skipped
+     */
+    private List<String> getMetadataValuesFromProcess(String name) {
+        List<String> values = new ArrayList<>();
+        try {
+            if (logical == null) {
+                loadMetadataFile();
+            }
+            if (logical.getAllMetadata() != null) {
+                for (Metadata md : logical.getAllMetadata()) {
+                    if (md.getType().getName().equals(name) && StringUtils.isNotBlank(md.getValue())) {
+                        values.add(md.getValue().trim());
+                    }
+                }
+            }
+
+        } catch (ReadException | IOException | SwapException e) {
+            // readMetadataFile
+            String message = "Failed to read the METS file.";
+            logBoth(this.processId, LogType.ERROR, message);
+            e.printStackTrace();
+
+        } catch (PreferencesException e) {
+            // getDigitalDocument
+            String message = "Failed to load the digital document.";
+            logBoth(this.processId, LogType.ERROR, message);
+            e.printStackTrace();
+        }
+
+        return values;
     }
 
     /**
-     * get the step to duplicate
+     * get the step to duplicate, by its configured id, by its configured title pattern or by its name
      * 
-     * @param process Goobi process
      * @param stepName name of the step that shall be duplicated
      * @return the first step of the given name if the input name is not blank, otherwise the next step of the current one
      */
-    private Step getStepToDuplicate(Process process, String stepName) {
-        List<Step> steps = process.getSchritte();
-        if (StringUtils.isBlank(stepName)) {
+    private Step getStepToDuplicate(String stepName) {
+        Step found;
+        if (config.getStepToDuplicateId() > 0) {
+            found = processIndex.getStepById(config.getStepToDuplicateId());
+        } else if (config.getStepToDuplicatePattern() != null) {
+            found = processIndex.getStepByPattern(config.getStepToDuplicatePattern());
+        } else if (StringUtils.isBlank(stepName)) {
             // get the first step following the current one
-            for (int i = 0; i < steps.size() - 1; ++i) {
-                Step step = steps.get(i);
-                if (this.step.equals(step)) {
-                    return steps.get(i + 1);
-                }
-            }
+            found = processIndex.getNextStep(this.step);
+        } else {
+            // get the first step of name stepName
+            found = processIndex.getStepByTitle(stepName);
         }
-
-        // get the first step of name stepName
-        for (Step step : steps) {
-            String title = step.getTitel();
-            if (stepName.equals(title)) {
-                return step;
-            }
+        if (found != null) {
+            return found;
         }
 
         String message = "Failed to find a proper step for duplication. Aborting...";
@@ -276,197 +480,1091 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
         return ret != PluginReturnValue.ERROR;
     }
 
-    @Override
-    public PluginReturnValue run() {
-        // your logic goes here
-        boolean successful = stepDuplicationEnabled ? processWithStepDuplication() : processWithoutStepDuplication();
-
-        log.info("DuplicateTasks step plugin executed");
+    @Override
+    public PluginReturnValue run() {
+        // the journal is also written if the run fails with an unexpected exception
+        try {
+            if (isMetadataTarget() && !validateMetadataTargets()) {
+                // fail before the METS file is read
+                return PluginReturnValue.ERROR;
+            }
+
+            if (config.isDryRun()) {
+                DuplicationPlan plan = plan();
+                logBoth(processId, LogType.INFO, plan.getSummary());
+                logDroppedEntries();
+                // the step must not be closed, otherwise the workflow would continue without any duplication
+                return PluginReturnValue.WAIT;
+            }
+
+            ProcessLocks.Lock lock = ProcessLocks.tryAcquire(processId, config.getLockTimeout(), config.isDatabaseLock(),
+                    config.getDatabaseLockConnections());
+            if (lock == null) {
+                logBoth(processId, LogType.ERROR, "Timed out waiting for the lock of the process, another run is still changing it");
+                return PluginReturnValue.ERROR;
+            }
+
+            DuplicationStore unmeteredStore = store;
+            boolean successful;
+            try {
+                PluginReturnValue checked = checkOtherRuns();
+                if (checked == PluginReturnValue.ERROR) {
+                    return PluginReturnValue.ERROR;
+                }
+                if (checked == PluginReturnValue.FINISH) {
+                    successful = true;
+                } else {
+                    store = withWriteBudget(new MeteredDuplicationStore(unmeteredStore, metrics));
+                    successful = config.isStepDuplicationEnabled() ? processWithStepDuplication() : processWithoutStepDuplication();
+                }
+            } finally {
+                store = unmeteredStore;
+                shutdownPropertyExecutor();
+                lock.close();
+            }
+
+            DuplicateTasksMetrics.getInstance().record(metrics, successful);
+            logBoth(processId, LogType.INFO, metrics.getSummary());
+            logDroppedEntries();
+            if (config.isContinueOnError()) {
+                logBoth(processId, LogType.INFO, report.getSummary());
+            }
+            log.info("DuplicateTasks step plugin executed");
+
+            return successful ? PluginReturnValue.FINISH : PluginReturnValue.ERROR;
+
+        } finally {
+            closeValueFile();
+            flushJournal();
+        }
+    }
+
+    /**
+     * check if another run has changed the process since it was read, which is done as soon as the lock of the process is held. The step to
+     * duplicate is read again and compared with the one that was read before, only if another run has changed its duplicates the process is read
+     * again.
+     * 
+     * @return FINISH if the step is already duplicated and there is nothing left to do, ERROR if the step can not be read again, null if the run
+     *         shall continue
+     */
+    private PluginReturnValue checkOtherRuns() {
+        if (logical != null && isMetadataTarget()) {
+            // the METS file is read again while the lock is held, so that the changes of other runs are not overwritten
+            fileformat = null;
+            logical = null;
+        }
+        if (!config.isStepDuplicationEnabled() || stepToDuplicate == null) {
+            return null;
+        }
+
+        Step lockedTemplate = store.reloadStep(stepToDuplicate);
+        if (lockedTemplate == null) {
+            logBoth(processId, LogType.ERROR, "Failed to read the step to duplicate again after the lock of the process was acquired",
+                    stepToDuplicate.getTitel());
+            return PluginReturnValue.ERROR;
+        }
+        Process lockedProcess = lockedTemplate.getProzess();
+        String origStepTitle = stepToDuplicate.getTitel();
+        if (!config.isIncremental() && !skipExisting
+                && (lockedTemplate.getBearbeitungsstatusEnum() == StepStatus.DEACTIVATED || !getDuplicateIds(lockedProcess, origStepTitle).isEmpty())) {
+            DuplicationState state = DuplicationState.load(lockedProcess, origStepTitle);
+            if (state == null || !state.hasFailedEntries()) {
+                // another run or an earlier one has already duplicated the step, duplicating it again would create a second set of duplicates
+                logBoth(processId, LogType.INFO, "The step is already duplicated, nothing is changed", origStepTitle);
+                return PluginReturnValue.FINISH;
+            }
+        }
+
+        if (lockedTemplate.getBearbeitungsstatusEnum() != stepToDuplicate.getBearbeitungsstatusEnum()
+                || !getDuplicateIds(lockedProcess, origStepTitle).equals(getDuplicateIds(process, origStepTitle))) {
+            // the incremental mode and the skipping of existing parts compare with the duplicates of the other run
+            Step lockedStep = store.reloadStep(step);
+            if (lockedStep == null) {
+                logBoth(processId, LogType.ERROR, "Failed to read the step again after the lock of the process was acquired", step.getTitel());
+                return PluginReturnValue.ERROR;
+            }
+            initialize(lockedStep, returnPath, prefs, config);
+        }
+        return null;
+    }
+
+    /**
+     * get the ids of all duplicates of the input step
+     * 
+     * @param process Goobi process
+     * @param origStepTitle title of the duplicated step
+     * @return ids of the steps whose titles are the input title followed by an index
+     */
+    private Set<Integer> getDuplicateIds(Process process, String origStepTitle) {
+        Set<Integer> ids = new HashSet<>();
+        for (Step existingStep : process.getSchritte()) {
+            if (getOrderFromTitle(origStepTitle, existingStep.getTitel()) > 0) {
+                ids.add(existingStep.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * report how many parts were dropped because they were repeated or already existed
+     */
+    private void logDroppedEntries() {
+        if (distinctValues != null && distinctValues.getDroppedRepeated() + distinctValues.getDroppedExisting() > 0) {
+            String message = "Dropped " + distinctValues.getDroppedRepeated() + " repeated entries and " + distinctValues.getDroppedExisting()
+                    + " entries that already exist";
+            logBoth(processId, LogType.INFO, message);
+        }
+    }
+
+    /**
+     * calculate what a run would create, without saving anything. The incremental mode is not taken into account, so the numbers are an upper
+     * bound in that case.
+     * 
+     * @return the plan
+     */
+    public DuplicationPlan plan() {
+        DuplicationPlan plan = new DuplicationPlan();
+        int total = properties == null ? 0 : countEntries(properties);
+        plan.setEntries(total);
+
+        // number of entries that would be handled now
+        int handled = total;
+        int databaseWrites = 0;
+        if (config.isStepDuplicationEnabled()) {
+            if (!checkNecessaryFieldsForStepDuplication()) {
+                plan.setStepToDuplicateFound(stepToDuplicate != null);
+                return plan;
+            }
+            if (config.getWindow() > 0) {
+                handled = Math.min(config.getWindow(), total);
+                // state of the duplication
+                ++databaseWrites;
+            }
+            plan.setNewSteps(handled);
+            // new steps and the deactivation of the original step
+            databaseWrites += handled + 1;
+        }
+
+        String type = config.getTargetType().toLowerCase();
+        if (isJsonTarget()) {
+            plan.setNewProperties(total > 0 ? 1 : 0);
+        } else if ("property".equals(type)) {
+            plan.setNewProperties(handled);
+        } else if ("metadata".equals(type) || "person".equals(type)) {
+            plan.setNewMetadata(handled);
+            plan.setMetsWrites(handled > 0 ? 1 : 0);
+            int overhead = "person".equals(type) ? DuplicationPlan.PERSON_OVERHEAD_BYTES : DuplicationPlan.METADATA_OVERHEAD_BYTES;
+            long growth = 0;
+            int order = 0;
+            for (String entry : properties) {
+                if (++order > handled) {
+                    break;
+                }
+                growth += overhead + config.getTargetName().length() + entry.length();
+            }
+            plan.setEstimatedMetsGrowth(growth);
+        }
+        plan.setDatabaseWrites(databaseWrites + plan.getNewProperties());
+        return plan;
+    }
+
+    /**
+     * processing logic when step duplication is enabled
+     * 
+     * @return true if everything works out well, false otherwise
+     */
+    private boolean processWithStepDuplication() {
+        if (!checkNecessaryFieldsForStepDuplication()) {
+            return false;
+        }
+        if (config.isIncremental()) {
+            return duplicateStepForEachEntryIncrementally(stepToDuplicate, properties);
+        }
+        if (stepToDuplicate.getBearbeitungsstatusEnum() == StepStatus.DEACTIVATED) {
+            // only reached if entries failed in an earlier run with continueOnError
+            DuplicationState state = DuplicationState.load(process, stepToDuplicate.getTitel());
+            if (state != null && state.hasFailedEntries()) {
+                return retryFailedEntries(stepToDuplicate, state);
+            }
+        }
+        return duplicateStepForEachEntry(stepToDuplicate, properties);
+    }
+
+    /**
+     * handle the entries again that failed in an earlier run with continueOnError. Their duplicates were kept, so only their process properties or
+     * metadata are added.
+     * 
+     * @param step the step that was duplicated
+     * @param state state of the duplication that lists the failed entries
+     * @return true if all failed entries are successfully handled now, false otherwise
+     */
+    private boolean retryFailedEntries(Step step, DuplicationState state) {
+        String origStepTitle = step.getTitel();
+        if (!DuplicationState.hashParts(properties).equals(state.getPartsHash())) {
+            // the indexes of the failed entries are not reliable anymore
+            String message = "The value has changed since the entries failed, they are not handled again";
+            logBoth(this.processId, LogType.ERROR, message, origStepTitle);
+            return false;
+        }
+        log.debug("handling the failed entries " + state.getFailedEntries() + " of the step '" + origStepTitle + "' again");
+
+        boolean result = true;
+        int order = 0;
+        for (String entry : properties) {
+            ++order;
+            if (result && state.getFailedEntries().contains(order)) {
+                result = addEntry(order, getTargetNameForDuplicate(origStepTitle, order), entry);
+            }
+        }
+        boolean saved = saveEntries(result);
+        // entries that failed again are handled by the next run, all of them if the failure does not belong to single entries
+        if (saved) {
+            state.setFailedEntries(new LinkedHashSet<>());
+        } else if (report.getFailedCount() > 0) {
+            state.setFailedEntries(report.getFailedOrders());
+        }
+        return saveDuplicationState(state, origStepTitle) && saved;
+    }
+
+    /**
+     * processing logic when step duplication is disabled
+     * 
+     * @return true if everything works out well, false otherwise
+     */
+    private boolean processWithoutStepDuplication() {
+        if (isJsonTarget()) {
+            metrics.addEntries(countEntries(properties));
+            String targetNameToSave = StringUtils.isBlank(config.getTargetName()) ? config.getPropertyName() : config.getTargetName();
+            GoobiProperty existingProperty = processIndex.getProperty(targetNameToSave);
+            if (existingProperty == null) {
+                return addProcessProperty(targetNameToSave, SplitPropertyValues.toJson(properties)) && saveProcessProperties();
+            }
+            // readers only use the first property of this name, so its value is changed instead of adding another property
+            List<String> values = new ArrayList<>();
+            if (skipExisting) {
+                // the new parts are appended to the parts of the earlier runs
+                values.addAll(SplitPropertyValues.fromJson(existingProperty.getWert()));
+            }
+            properties.forEach(values::add);
+            String json = SplitPropertyValues.toJson(values);
+            return json.equals(existingProperty.getWert()) || updateProcessProperty(existingProperty, json);
+        }
+
+        boolean result = true;
+        int order = 0;
+        for (String entry : properties) {
+            if (!result) {
+                break;
+            }
+            ++order;
+            String targetNameToSave = StringUtils.isBlank(config.getTargetName()) ? config.getPropertyName() : config.getTargetName();
+            if (config.isUseIndex()) {
+                targetNameToSave = getNewTitleWithOrder(targetNameToSave, order);
+            }
+            result = addEntry(order, targetNameToSave, entry);
+        }
+
+        return saveEntries(result);
+    }
+
+    /**
+     * check if all necessary fields needed for further processing are available and valid
+     * 
+     * @return true if all necessary fields are available and valid, false otherwise
+     */
+    private boolean checkNecessaryFieldsForStepDuplication() {
+        // 1. stepToDuplicate should not be null
+        // 2. a blank propertyValue makes no sense
+        return stepToDuplicate != null && properties.iterator().hasNext();
+    }
+
+    /**
+     * perform the duplication of the input step for each entry in the input props array, and deactivate the input step afterwards. All changes are
+     * one unit of work: if one of them fails, the duplicates, the new process properties and the state are removed again and the input step stays
+     * active, so that the next run starts from scratch.
+     * 
+     * @param step the step that is to be duplicated
+     * @param properties strings, each of which will be recorded as value of a new process property
+     * @return true if the duplication process is successful for all entries, false otherwise
+     */
+    private boolean duplicateStepForEachEntry(Step step, Iterable<String> properties) {
+        if (properties == null) {
+            // this is actually impossible, but only for the matter of completeness and double assurance
+            return false;
+        }
+
+        String origStepTitle = step.getTitel();
+
+        int total = countEntries(properties);
+        // in windowed mode only the first duplicates are created now, the others follow when these are closed
+        int window = config.getWindow();
+        int limit = window > 0 ? Math.min(window, total) : total;
+
+        if ((window > 0 || StringUtils.isNotBlank(config.getJoinStepName())) && step.isTypAutomatisch()) {
+            // Goobi calls validation plugins only when a user closes a step, so closing automatic duplicates would never be noticed
+            String message = "The windowed mode and the join step need a step that is closed by users, but the step to duplicate is automatic";
+            logBoth(this.processId, LogType.ERROR, message, origStepTitle);
+            return false;
+        }
+
+        StepStatus templateStatus = step.getBearbeitungsstatusEnum();
+        savedProperties = new ArrayList<>();
+        if (!duplicateStepForEntries(step, properties, 1, limit, false)) {
+            rollBackDuplication(step, templateStatus);
+            return false;
+        }
+
+        if (isJsonTarget()) {
+            // the index of each part in the JSON array matches the index in the title of its duplicated step
+            metrics.addEntries(total);
+            String targetNameToSave = StringUtils.isBlank(config.getTargetName()) ? origStepTitle : config.getTargetName();
+            if (!addProcessProperty(targetNameToSave, SplitPropertyValues.toJson(properties))) {
+                rollBackDuplication(step, templateStatus);
+                return false;
+            }
+        }
+
+        DuplicationState state = null;
+        // value of the state of an earlier run, which is restored if this run fails
+        String previousState = null;
+        // true if closing the duplicates has to be tracked
+        boolean tracked = window > 0 || StringUtils.isNotBlank(config.getJoinStepName());
+        if (tracked || config.isContinueOnError()) {
+            // a rerun replaces the state of the earlier run, so that there is only one property holding it
+            state = DuplicationState.load(process, origStepTitle);
+            if (state == null) {
+                state = new DuplicationState();
+            } else {
+                previousState = state.getProperty().getWert();
+            }
+            state.setPluginStepId(this.step.getId());
+            state.setTemplateStepId(step.getId());
+            state.setTotal(total);
+            state.setCreated(limit);
+            state.setWindow(window);
+            state.setOpenDuplicateIds(tracked ? new LinkedHashSet<>(createdStepIds) : new LinkedHashSet<>());
+            state.setJoinStepId(0);
+            state.setJoined(false);
+            state.setPartsHash(DuplicationState.hashParts(properties));
+            state.setFailedEntries(new LinkedHashSet<>());
+            if (StringUtils.isNotBlank(config.getJoinStepName())) {
+                Step joinStep = processIndex.getStepByTitle(config.getJoinStepName());
+                if (joinStep == null) {
+                    logBoth(this.processId, LogType.ERROR, "Failed to find the join step", config.getJoinStepName());
+                    rollBackDuplication(step, templateStatus);
+                    return false;
+                }
+                state.setJoinStepId(joinStep.getId());
+            }
+        }
+
+        // properties that fail with continueOnError are failed entries, which do not roll back the others
+        boolean saved = deactivateStep(step) && (saveProcessProperties() || report.getFailedCount() > 0);
+        if (saved && state != null) {
+            // the next run only handles the failed entries again
+            state.setFailedEntries(report.getFailedOrders());
+            if (tracked || previousState != null || !state.getFailedEntries().isEmpty()) {
+                saved = saveDuplicationState(state, origStepTitle);
+            }
+        }
+        // the METS file is written last, because it is the only change that can not be rolled back
+        if (saved && saveMetadataChanges()) {
+            if (report.getFailedCount() > 0) {
+                logBoth(this.processId, LogType.INFO, "The failed entries are handled again by the next run, the other duplicates are kept");
+                return false;
+            }
+            return true;
+        }
+        if (state != null && state.getProperty() != null) {
+            restoreDuplicationState(state, previousState);
+        }
+        rollBackDuplication(step, templateStatus);
+        return false;
+    }
+
+    /**
+     * remove everything that a failed duplication has saved: the new duplicates and process properties are deleted and the input step gets its
+     * original status again. Changes of the METS file are discarded before it is written.
+     * 
+     * @param step the step that was duplicated
+     * @param templateStatus status of the step before the duplication
+     */
+    private void rollBackDuplication(Step step, StepStatus templateStatus) {
+        logBoth(this.processId, LogType.INFO, "The duplication failed, all changes of this run are removed again", step.getTitel());
+        deleteSteps(createdSteps);
+        process.getSchritte().removeAll(createdSteps);
+        createdSteps.forEach(processIndex::removeStep);
+        createdSteps = new ArrayList<>();
+        createdStepIds = new ArrayList<>();
+
+        for (Processproperty property : savedProperties) {
+            deleteProcessProperty(property);
+        }
+        savedProperties = new ArrayList<>();
+        pendingProperties = new ArrayList<>();
+        pendingOrders = new ArrayList<>();
+
+        fileformat = null;
+        logical = null;
+        metadataChanged = false;
+
+        if (step.getBearbeitungsstatusEnum() != templateStatus) {
+            step.setBearbeitungsstatusEnum(templateStatus);
+            saveSteps(Collections.singletonList(step));
+        }
+    }
+
+    /**
+     * restore the state of a duplication after a failed run
+     * 
+     * @param state state that was saved by the failed run
+     * @param previousState value of the state before the run, null if there was none
+     */
+    private void restoreDuplicationState(DuplicationState state, String previousState) {
+        if (previousState == null) {
+            deleteProcessProperty(state.getProperty());
+        } else {
+            updateProcessProperty(state.getProperty(), previousState);
+        }
+    }
+
+    /**
+     * create the duplicates of the input step for the entries of the input range, together with their process properties or metadata
+     * 
+     * @param step the step that is to be duplicated
+     * @param properties all entries
+     * @param from index of the first entry that shall be handled, starting with 1
+     * @param to index of the last entry that shall be handled
+     * @param open true if the duplicates shall be opened right away, false if they keep the status of a new step
+     * @return true if all duplicates are created, false otherwise
+     */
+    private boolean duplicateStepForEntries(Step step, Iterable<String> properties, int from, int to, boolean open) {
+        String origStepTitle = step.getTitel();
+
+        // create all duplicates first, so that they can be saved together and removed again if one of them fails
+        createdSteps = new ArrayList<>();
+        List<Step> newSteps = new ArrayList<>();
+        Date now = new Date();
+        long start = System.nanoTime();
+        for (int order = from; order <= to; ++order) {
+            Step newStep = duplicateStep(step, getNewTitleWithOrder(origStepTitle, order));
+            if (open) {
+                newStep.setBearbeitungsstatusEnum(StepStatus.OPEN);
+                newStep.setBearbeitungszeitpunkt(now);
+            }
+            newSteps.add(newStep);
+            metrics.addStepCreated();
+        }
+        metrics.addCloneTime(System.nanoTime() - start);
+
+        if (!saveDuplicatedSteps(newSteps, step)) {
+            return false;
+        }
+        createdSteps = newSteps;
+        createdStepIds = new ArrayList<>(newSteps.size());
+        for (Step newStep : newSteps) {
+            createdStepIds.add(newStep.getId());
+        }
+
+        if (isJsonTarget()) {
+            // all entries are saved together in one process property
+            return true;
+        }
+
+        boolean result = true;
+        int order = 0;
+        for (String entry : properties) {
+            ++order;
+            if (order < from) {
+                continue;
+            }
+            if (!result || order > to) {
+                break;
+            }
+            String targetNameToSave = getTargetNameForDuplicate(origStepTitle, order);
+            result = addEntry(order, targetNameToSave, entry);
+        }
+
+        return result;
+    }
+
+    /**
+     * update the state of a duplication when one of its duplicates is closed. Called by DuplicateTasksValidationPlugin as soon as the close of a
+     * duplicate is committed. In windowed mode the next duplicates are created, so that the configured number of duplicates is open again. As
+     * soon as all duplicates are created and closed, the join step is opened if one is configured.
+     * 
+     * @param closingStep the duplicate that is closed, it is only counted if its status is DONE
+     * @return true if there was nothing to do or the state is successfully updated, false otherwise
+     */
+    public boolean handleClosedDuplicate(Step closingStep) {
+        try {
+            if (closingStep.getBearbeitungsstatusEnum() != StepStatus.DONE) {
+                // the close is not committed, so the duplicate is still open
+                return true;
+            }
+            if (stepToDuplicate == null) {
+                return false;
+            }
+            String origStepTitle = stepToDuplicate.getTitel();
+            DuplicationState state = DuplicationState.load(process, origStepTitle);
+            if (state == null || !state.isPending()) {
+                return true;
+            }
+
+            DuplicationStore unbudgetedStore = store;
+            store = withWriteBudget(unbudgetedStore);
+            try {
+                return updateClosedDuplicate(state, origStepTitle, closingStep);
+            } finally {
+                store = unbudgetedStore;
+                shutdownPropertyExecutor();
+            }
+
+        } finally {
+            closeValueFile();
+            // also write the errors of initialize, e.g. if the duplicated step is not found
+            flushJournal();
+        }
+    }
+
+    /**
+     * update the state of a duplication when one of its duplicates is closed
+     * 
+     * @param state state of the duplication
+     * @param origStepTitle title of the duplicated step
+     * @param closingStep the duplicate that is being closed
+     * @return true if the state is successfully updated, false otherwise
+     */
+    private boolean updateClosedDuplicate(DuplicationState state, String origStepTitle, Step closingStep) {
+        boolean changed = state.closeDuplicate(closingStep.getId());
+        boolean result = true;
+        boolean refilled = false;
+        if (state.getWindow() > 0 && state.getCreated() < state.getTotal()) {
+            int toCreate = Math.min(state.getWindow() - countOpenDuplicates(state), state.getTotal() - state.getCreated());
+            if (toCreate > 0 && !DuplicationState.hashParts(properties).equals(state.getPartsHash())) {
+                // the indexes of the remaining parts are not reliable anymore, but the closed duplicate is still remembered
+                String message = "The value has changed since the duplication started, the remaining duplicates are not created";
+                logBoth(this.processId, LogType.ERROR, message, origStepTitle);
+                result = false;
+            } else if (toCreate > 0) {
+                int from = state.getCreated() + 1;
+                int to = state.getCreated() + toCreate;
+                log.debug("creating the duplicates " + from + " to " + to + " of the step '" + origStepTitle + "'");
+                // the workflow opens the steps of one order only once, so the duplicates must be opened like their siblings
+                savedProperties = new ArrayList<>();
+                if (duplicateStepForEntries(stepToDuplicate, properties, from, to, areDuplicatesOpen(origStepTitle)) && saveEntries(true)) {
+                    state.setCreated(to);
+                    state.addOpenDuplicates(createdStepIds);
+                    changed = true;
+                    refilled = true;
+                } else {
+                    // the next closed duplicate tries again, the closed duplicate is still remembered
+                    rollBackDuplication(stepToDuplicate, stepToDuplicate.getBearbeitungsstatusEnum());
+                    result = false;
+                }
+            }
+        }
+
+        if (state.getJoinStepId() > 0 && !state.isJoined() && state.isComplete()) {
+            result = openJoinStep(state.getJoinStepId()) && result;
+            state.setJoined(true);
+            changed = true;
+        }
+
+        if (changed && !saveDuplicationState(state, origStepTitle)) {
+            if (refilled) {
+                // the state does not know the new duplicates, so they would be created again by the next closed duplicate
+                rollBackDuplication(stepToDuplicate, stepToDuplicate.getBearbeitungsstatusEnum());
+            }
+            return false;
+        }
+        return result;
+    }
+
+    /**
+     * check if the workflow has already opened the duplicates of the input step
+     * 
+     * @param origStepTitle title of the duplicated step
+     * @return true if at least one duplicate is neither locked nor deactivated
+     */
+    private boolean areDuplicatesOpen(String origStepTitle) {
+        for (Step existingStep : process.getSchritte()) {
+            StepStatus status = existingStep.getBearbeitungsstatusEnum();
+            if (getOrderFromTitle(origStepTitle, existingStep.getTitel()) > 0 && status != StepStatus.LOCKED && status != StepStatus.DEACTIVATED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * let all database writes of the input store wait for the configured write budget
+     * 
+     * @param unbudgetedStore the store whose writes shall be limited
+     * @return a store that respects the budget, or the input store if no budget is configured
+     */
+    private DuplicationStore withWriteBudget(DuplicationStore unbudgetedStore) {
+        WriteBudget budget = WriteBudget.get(config.getWriteRowsPerSecond(), config.getWriteMaxInFlight());
+        return budget == null ? unbudgetedStore : new BudgetedDuplicationStore(unbudgetedStore, budget, metrics);
+    }
+
+    /**
+     * count the duplicates that are still open, the one that is being closed is already removed from the state
+     * 
+     * @param state state of the duplication
+     * @return number of open duplicates
+     */
+    private int countOpenDuplicates(DuplicationState state) {
+        return state.getOpenDuplicateIds() == null ? 0 : state.getOpenDuplicateIds().size();
+    }
+
+    /**
+     * open the step that waits for all duplicates, in the same way the workflow opens the next step: an automatic step is started right away
+     * 
+     * @param joinStepId id of the join step
+     * @return true if the step is successfully opened, false otherwise
+     */
+    private boolean openJoinStep(int joinStepId) {
+        Step joinStep = processIndex.getStepById(joinStepId);
+        if (joinStep == null) {
+            logBoth(this.processId, LogType.ERROR, "Failed to find the join step with the id " + joinStepId);
+            return false;
+        }
+        if (joinStep.getBearbeitungsstatusEnum() != StepStatus.LOCKED) {
+            // already opened by the workflow or by a user
+            return true;
+        }
+        try {
+            joinStep.setBearbeitungsstatusEnum(StepStatus.OPEN);
+            joinStep.setBearbeitungszeitpunkt(new Date());
+            store.saveStep(joinStep);
+            logBoth(this.processId, LogType.INFO, "All duplicates are closed, the join step is opened", joinStep.getTitel());
+            if (joinStep.isTypAutomatisch()) {
+                new ScriptThreadWithoutHibernate(joinStep).startOrPutToQueue();
+            }
+            return true;
+
+        } catch (DAOException e) {
+            String message = "Failed to save the step";
+            logBoth(this.processId, LogType.ERROR, message, joinStep.getTitel());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * save the state of a duplication
+     * 
+     * @param state state of the duplication
+     * @param origStepTitle title of the duplicated step
+     * @return true if the state is successfully saved, false otherwise
+     */
+    private boolean saveDuplicationState(DuplicationState state, String origStepTitle) {
+        try {
+            state.save(process, origStepTitle, store);
+            return true;
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to save the state of the duplication of the step";
+            logBoth(this.processId, LogType.ERROR, message, origStepTitle);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * compare the duplicates and properties that already exist on the process with the current entries, and only create, update or deactivate
+     * what has changed since the last run
+     * 
+     * @param step the step that is to be duplicated
+     * @param properties strings, each of which will be recorded as value of a process property
+     * @return true if all changes are successfully saved, false otherwise
+     */
+    private boolean duplicateStepForEachEntryIncrementally(Step step, Iterable<String> properties) {
+        String origStepTitle = step.getTitel();
+
+        // duplicates that were created by earlier runs, key is their index
+        Map<Integer, Step> existingSteps = new HashMap<>();
+        for (Step existingStep : process.getSchritte()) {
+            int order = getOrderFromTitle(origStepTitle, existingStep.getTitel());
+            if (order > 0) {
+                existingSteps.put(order, existingStep);
+            }
+        }
+
+        List<Step> newSteps = new ArrayList<>();
+        List<Step> changedSteps = new ArrayList<>();
+        int count = 0;
+        for (Iterator<String> it = properties.iterator(); it.hasNext(); it.next()) {
+            ++count;
+            Step existingStep = existingSteps.get(count);
+            if (existingStep == null) {
+                newSteps.add(duplicateStep(step, getNewTitleWithOrder(origStepTitle, count)));
+                metrics.addStepCreated();
+            } else if (existingStep.getBearbeitungsstatusEnum() == StepStatus.DEACTIVATED) {
+                // the entry was removed by an earlier run and is back again
+                existingStep.setBearbeitungsstatusEnum(StepStatus.LOCKED);
+                changedSteps.add(existingStep);
+            }
+        }
+        // duplicates whose entries do not exist anymore
+        for (Map.Entry<Integer, Step> existing : existingSteps.entrySet()) {
+            Step existingStep = existing.getValue();
+            if (existing.getKey() > count && existingStep.getBearbeitungsstatusEnum() != StepStatus.DEACTIVATED) {
+                existingStep.setBearbeitungsstatusEnum(StepStatus.DEACTIVATED);
+                changedSteps.add(existingStep);
+            }
+        }
+        log.debug("incremental run: " + newSteps.size() + " new steps, " + changedSteps.size() + " changed steps");
+
+        if (!saveDuplicatedSteps(newSteps, step) || !saveSteps(changedSteps)) {
+            return false;
+        }
+
+        // process properties that already exist, key is their normalized title
+        Map<String, GoobiProperty> existingProperties = processIndex.getProperties();
+
+        if (isJsonTarget()) {
+            String targetNameToSave = StringUtils.isBlank(config.getTargetName()) ? origStepTitle : config.getTargetName();
+            String json = SplitPropertyValues.toJson(properties);
+            GoobiProperty existingProperty = existingProperties.get(targetNameToSave.replace(" ", "_"));
+            boolean saved;
+            if (existingProperty == null) {
+                saved = addProcessProperty(targetNameToSave, json) && saveProcessProperties();
+            } else {
+                saved = json.equals(existingProperty.getWert()) || updateProcessProperty(existingProperty, json);
+            }
+            return saved && deactivateStep(step);
+        }
+
+        // properties can only be compared one by one if each of them has its own name, metadata is only added for new duplicates
+        boolean compareProperties = "property".equalsIgnoreCase(config.getTargetType())
+                && (StringUtils.isBlank(config.getTargetName()) || config.isUseIndex());
+
+        boolean result = true;
+        // duplicates that are already done but whose entries have changed, they have to be done again
+        List<Step> reopenedSteps = new ArrayList<>();
+        int order = 0;
+        for (String entry : properties) {
+            if (!result) {
+                break;
+            }
+            ++order;
+            String targetNameToSave = getTargetNameForDuplicate(origStepTitle, order);
+            GoobiProperty existingProperty = compareProperties ? existingProperties.get(targetNameToSave.replace(" ", "_")) : null;
+            if (existingProperty != null) {
+                if (!entry.equals(existingProperty.getWert())) {
+                    lastError = null;
+                    result = recordEntry(order, entry, updateProcessProperty(existingProperty, entry));
+                    Step existingStep = existingSteps.get(order);
+                    if (existingStep != null && existingStep.getBearbeitungsstatusEnum() == StepStatus.DONE) {
+                        existingStep.setBearbeitungsstatusEnum(StepStatus.OPEN);
+                        existingStep.setBearbeitungszeitpunkt(new Date());
+                        reopenedSteps.add(existingStep);
+                        logBoth(this.processId, LogType.INFO, "The entry of the duplicate has changed, the duplicate is opened again",
+                                existingStep.getTitel());
+                    }
+                }
+            } else if (compareProperties || !existingSteps.containsKey(order)) {
+                result = addEntry(order, targetNameToSave, entry);
+            }
+        }
+        if (!reopenedSteps.isEmpty()) {
+            result = saveSteps(reopenedSteps) && result;
+        }
+
+        if (compareProperties) {
+            // properties whose entries do not exist anymore
+            for (Integer existingOrder : existingSteps.keySet()) {
+                GoobiProperty existingProperty = existingOrder > count
+                        ? existingProperties.get(getTargetNameForDuplicate(origStepTitle, existingOrder).replace(" ", "_"))
+                        : null;
+                if (result && existingProperty != null) {
+                    result = deleteProcessProperty(existingProperty) || config.isContinueOnError();
+                }
+            }
+        }
+
+        return saveEntries(result) && deactivateStep(step);
+    }
+
+    /**
+     * get the name of the property or metadata that belongs to the duplicate of the input order
+     * 
+     * @param origStepTitle title of the step that is duplicated
+     * @param order index of the duplicate
+     * @return name of the property or metadata
+     */
+    private String getTargetNameForDuplicate(String origStepTitle, int order) {
+        String targetName = config.getTargetName();
+        if (StringUtils.isBlank(targetName)) {
+            return getNewTitleWithOrder(origStepTitle, order);
+        }
+        return config.isUseIndex() ? getNewTitleWithOrder(targetName, order) : targetName;
+    }
+
+    /**
+     * get the order of a duplicate from its title
+     * 
+     * @param origStepTitle title of the step that is duplicated
+     * @param title title of the step that shall be checked
+     * @return the order used in the title if it is a duplicate of the step, otherwise -1
+     */
+    private int getOrderFromTitle(String origStepTitle, String title) {
+        String prefix = origStepTitle + " [";
+        if (title == null || !title.startsWith(prefix) || !title.endsWith("]")) {
+            return -1;
+        }
+        String order = title.substring(prefix.length(), title.length() - 1);
+        return StringUtils.isNumeric(order) && !order.isEmpty() ? Integer.parseInt(order) : -1;
+    }
+
+    /**
+     * count the entries without keeping them
+     * 
+     * @param properties entries
+     * @return number of entries
+     */
+    private int countEntries(Iterable<String> properties) {
+        int count = 0;
+        for (Iterator<String> it = properties.iterator(); it.hasNext(); it.next()) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * check if all parts shall be saved as one JSON array in a single process property
+     * 
+     * @return true if the targetType is json, false otherwise
+     */
+    private boolean isJsonTarget() {
+        return "json".equalsIgnoreCase(config.getTargetType());
+    }
 
-        return successful ? PluginReturnValue.FINISH : PluginReturnValue.ERROR;
+    /**
+     * get the new title based on the old title and an input order, the order continues after the indexes of earlier runs if existing parts are
+     * skipped
+     * 
+     * @param title old title
+     * @param order
+     * @return new title
+     */
+    private String getNewTitleWithOrder(String title, int order) {
+        return title + " [" + (order + indexOffset) + "]";
     }
 
     /**
-     * processing logic when step duplication is enabled
+     * duplicate the input step and name it with the input title, the new step is not saved yet. The step is only read once per run, all duplicates
+     * are created from this snapshot.
      * 
-     * @return true if everything works out well, false otherwise
+     * @param step the step that is to be duplicated
+     * @param title title that shall be used to name the duplicated new step
+     * @return the duplicated new step
      */
-    private boolean processWithStepDuplication() {
-        return checkNecessaryFieldsForStepDuplication()
-                && duplicateStepForEachEntry(stepToDuplicate, properties)
-                && deactivateStep(stepToDuplicate);
+    Step duplicateStep(Step step, String title) {
+        if (stepTemplate == null || templateStep != step) {
+            stepTemplate = new StepTemplate(step, this.process);
+            templateStep = step;
+        }
+        return stepTemplate.newStep(title);
     }
 
     /**
-     * processing logic when step duplication is disabled
+     * save all duplicated steps as one unit of work. If one of the saves fails, all duplicates that are already saved will be deleted again, so
+     * that no partially duplicated process is left behind.
      * 
-     * @return true if everything works out well, false otherwise
+     * @param newSteps duplicated steps that are not saved yet
+     * @param step the step that was duplicated
+     * @return true if all duplicates are saved, false otherwise
      */
-    private boolean processWithoutStepDuplication() {
-        boolean result = true;
-        for (int i = 0; i < properties.size(); ++i) {
-            String targetNameToSave = StringUtils.isBlank(targetName) ? propertyName : targetName;
-            if (useIndex) {
-                targetNameToSave = getNewTitleWithOrder(targetNameToSave, i + 1);
+    private boolean saveDuplicatedSteps(List<Step> newSteps, Step step) {
+        List<Step> savedSteps = new ArrayList<>(newSteps.size());
+        String currentTitle = null;
+        try {
+            for (Step newStep : newSteps) {
+                currentTitle = newStep.getTitel();
+                store.saveStep(newStep);
+                savedSteps.add(newStep);
             }
-            result = result && addProcessPropertyOrMetadata(targetNameToSave, properties.get(i), targetType);
+            addDuplicatesToProcess(newSteps, step);
+            return true;
+
+        } catch (DAOException e) {
+            String message = "Failed to save the step";
+            logBoth(this.processId, LogType.ERROR, message, currentTitle);
+            e.printStackTrace();
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to save the step";
+            logBoth(this.processId, LogType.ERROR, message, currentTitle);
+            e.printStackTrace();
         }
 
-        return result;
+        // roll back
+        deleteSteps(savedSteps);
+        return false;
     }
 
     /**
-     * check if all necessary fields needed for further processing are available and valid
+     * deactivate the input step, which is done after all duplicates and their entries are saved
      * 
-     * @return true if all necessary fields are available and valid, false otherwise
+     * @param step step that shall be deactivated
+     * @return true if the step is successfully deactivated or was already deactivated, false otherwise
      */
-    private boolean checkNecessaryFieldsForStepDuplication() {
-        // 1. stepToDuplicate should not be null
-        // 2. a blank propertyValue makes no sense
-        return stepToDuplicate != null && StringUtils.isNotBlank(propertyValue);
+    private boolean deactivateStep(Step step) {
+        StepStatus origStatus = step.getBearbeitungsstatusEnum();
+        if (origStatus == StepStatus.DEACTIVATED) {
+            return true;
+        }
+        try {
+            step.setBearbeitungsstatusEnum(StepStatus.DEACTIVATED);
+            store.saveStep(step);
+            log.debug("The step with title '" + step.getTitel() + "' is deactivated.");
+            return true;
+
+        } catch (DAOException e) {
+            String message = "Failed to deactivate the step";
+            logBoth(this.processId, LogType.ERROR, message, step.getTitel());
+            e.printStackTrace();
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to deactivate the step";
+            logBoth(this.processId, LogType.ERROR, message, step.getTitel());
+            e.printStackTrace();
+        }
+
+        step.setBearbeitungsstatusEnum(origStatus);
+        return false;
     }
 
     /**
-     * perform the duplication of the input step for each entry in the input props array
+     * add the saved duplicates to the steps of the process. All duplicates keep the order of the original step, which makes the workflow open them
+     * in parallel as one group, and they are placed directly after the original step sorted by their index, so that the list of steps stays
+     * deterministic without renumbering the workflow.
      * 
-     * @param step the step that is to be duplicated
-     * @param props array of strings, each of which will be recorded as value of a new process property
-     * @return true if the duplication process is successful for all entries in the input array, false otherwise
+     * @param newSteps duplicates sorted by their index
+     * @param step the original step
      */
-    private boolean duplicateStepForEachEntry(Step step, List<String> properties) {
-        if (properties == null) {
-            // this is actually impossible, but only for the matter of completeness and double assurance
-            return false;
+    private void addDuplicatesToProcess(List<Step> newSteps, Step step) {
+        List<Step> steps = process.getSchritte();
+        int stepIndex = steps.indexOf(step);
+        if (stepIndex < 0) {
+            steps.addAll(newSteps);
+            newSteps.forEach(processIndex::addStep);
+            return;
         }
-
-        boolean result = true;
         String origStepTitle = step.getTitel();
-
-        for (int i = 0; i < properties.size(); ++i) {
-            String newStepTitle = getNewTitleWithOrder(origStepTitle, i + 1);
-
-            String targetNameToSave = targetName;
-            if (StringUtils.isBlank(targetName)) {
-                targetNameToSave = newStepTitle;
-            } else if (useIndex) {
-                targetNameToSave = getNewTitleWithOrder(targetName, i + 1);
+        int index = stepIndex + 1;
+        for (Step newStep : newSteps) {
+            int order = getOrderFromTitle(origStepTitle, newStep.getTitel());
+            // skip the duplicates with a smaller index, the new steps are sorted so the search continues where the last one was inserted
+            while (index < steps.size()) {
+                int existingOrder = getOrderFromTitle(origStepTitle, steps.get(index).getTitel());
+                if (existingOrder < 0 || existingOrder > order) {
+                    break;
+                }
+                ++index;
             }
+            steps.add(index++, newStep);
+            processIndex.addStep(newStep);
+        }
+    }
 
-            result = result
-                    && duplicateStep(step, newStepTitle)
-                    && addProcessPropertyOrMetadata(targetNameToSave, properties.get(i), targetType);
+    /**
+     * save the input steps that already exist
+     * 
+     * @param steps steps that shall be saved
+     * @return true if all steps are successfully saved, false otherwise
+     */
+    private boolean saveSteps(List<Step> steps) {
+        for (Step stepToSave : steps) {
+            try {
+                store.saveStep(stepToSave);
+            } catch (Exception e) {
+                String message = "Failed to save the step";
+                logBoth(this.processId, LogType.ERROR, message, stepToSave.getTitel());
+                e.printStackTrace();
+                return false;
+            }
         }
+        return true;
+    }
 
-        return result;
+    /**
+     * delete the input steps, used to roll back duplicates that were already saved
+     * 
+     * @param steps steps that shall be deleted
+     */
+    private void deleteSteps(List<Step> steps) {
+        for (Step stepToDelete : steps) {
+            try {
+                store.deleteStep(stepToDelete);
+            } catch (Exception e) {
+                String message = "Failed to delete the duplicated step";
+                logBoth(this.processId, LogType.ERROR, message, stepToDelete.getTitel());
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
-     * get the new title based on the old title and an input order
+     * add the property or metadata of one entry and record its result
      * 
-     * @param title old title
-     * @param order
-     * @return new title
+     * @param order index of the entry
+     * @param name name of the property or metadata
+     * @param entry value of the entry
+     * @return true if the following entries shall be handled, which is always the case if continueOnError is configured
      */
-    private String getNewTitleWithOrder(String title, int order) {
-        return title + " [" + order + "]";
+    private boolean addEntry(int order, String name, String entry) {
+        lastError = null;
+        return recordEntry(order, entry, addProcessPropertyOrMetadata(name, entry, config.getTargetType(), order));
     }
 
     /**
-     * duplicate the input step and name it with the input title
+     * record the result of one entry
      * 
-     * @param step the step that is to be duplicated
-     * @param title title that shall be used to name the duplicated new step
-     * @return true if the duplication is successful, false otherwise
-     */
-    private boolean duplicateStep(Step step, String title) {
-        Step newStep = new Step();
-        newStep.setProzess(this.process);
-        newStep.setTitel(title);
-
-        /* // =========================== fields that are NOT to be copied are: =========================== //
-         * 1. id, title
-         *     - which must be different
-         * 2. process, processId
-         *     - which is achieved by calling the setter on this.process directly
-         * 3. bearbeitungsstatus, bearbeitungszeitpunkt, bearbeitungsbeginn, bearbeitungsende, bearbeitungsbenutzer, userId, messageQueue
-         *     - which do not have to be the same
-         * // ============================================================================== // */
-
-        newStep.setPrioritaet(step.getPrioritaet());
-        newStep.setReihenfolge(step.getReihenfolge());
-
-        newStep.setEditTypeEnum(step.getEditTypeEnum());
-
-        newStep.setHomeverzeichnisNutzen(step.getHomeverzeichnisNutzen());
-        newStep.setTypMetadaten(step.isTypMetadaten());
-        newStep.setTypAutomatisch(step.isTypAutomatisch());
-        newStep.setTypAutomaticThumbnail(step.isTypAutomaticThumbnail());
-        newStep.setAutomaticThumbnailSettingsYaml(step.getAutomaticThumbnailSettingsYaml());
-        newStep.setTypImportFileUpload(step.isTypImportFileUpload());
-        newStep.setTypExportRus(step.isTypExportRus());
-        newStep.setTypImagesLesen(step.isTypImagesLesen());
-        newStep.setTypImagesSchreiben(step.isTypImagesSchreiben());
-        newStep.setTypExportDMS(step.isTypExportDMS());
-        newStep.setTypBeimAnnehmenModul(step.isTypBeimAnnehmenModul());
-        newStep.setTypBeimAnnehmenAbschliessen(step.isTypBeimAnnehmenAbschliessen());
-        newStep.setTypBeimAnnehmenModulUndAbschliessen(step.isTypBeimAnnehmenModulUndAbschliessen());
-        newStep.setTypScriptStep(step.isTypScriptStep());
-        newStep.setScriptname1(step.getScriptname1());
-        newStep.setScriptname2(step.getScriptname2());
-        newStep.setScriptname3(step.getScriptname3());
-        newStep.setScriptname4(step.getScriptname4());
-        newStep.setScriptname5(step.getScriptname5());
-        newStep.setTypModulName(step.getTypModulName());
-        newStep.setTypBeimAbschliessenVerifizieren(step.isTypBeimAbschliessenVerifizieren());
-        newStep.setBatchStep(step.isBatchStep());
-        newStep.setBatchSize(step.isBatchSize());
-        newStep.setHttpStep(step.isHttpStep());
-        newStep.setHttpUrl(step.getHttpUrl());
-        newStep.setHttpMethod(step.getHttpMethod());
-
-        String[] origPossibleHttpMethods = step.getPossibleHttpMethods();
-        // make a copy of this array
-        newStep.setPossibleHttpMethods(Arrays.stream(origPossibleHttpMethods).toArray(String[]::new));
-
-        newStep.setHttpJsonBody(step.getHttpJsonBody());
-        newStep.setHttpCloseStep(step.isHttpCloseStep());
-        newStep.setHttpEscapeBodyJson(step.isHttpEscapeBodyJson());
-
-        List<GoobiProperty> origPropertiesList = step.getEigenschaften();
-        // make a copy of this list
-        newStep.setEigenschaften(new ArrayList<>(origPropertiesList));
-
-        List<User> origUsersList = step.getBenutzer();
-        // make a copy of this list
-        newStep.setBenutzer(new ArrayList<>(origUsersList));
-
-        List<Usergroup> origUserGroupsList = step.getBenutzergruppen();
-        // make a copy of this list
-        newStep.setBenutzergruppen(new ArrayList<>(origUserGroupsList));
-
-        newStep.setPanelAusgeklappt(step.isPanelAusgeklappt());
-        newStep.setSelected(step.isSelected());
-        newStep.setStepPlugin(step.getStepPlugin());
-        newStep.setValidationPlugin(step.getValidationPlugin());
-        newStep.setDelayStep(step.isDelayStep());
-        newStep.setUpdateMetadataIndex(step.isUpdateMetadataIndex());
-        newStep.setGenerateDocket(step.isGenerateDocket());
+     * @param order index of the entry
+     * @param entry value of the entry
+     * @param successful true if the entry was handled successfully
+     * @return true if the following entries shall be handled, which is always the case if continueOnError is configured
+     */
+    private boolean recordEntry(int order, String entry, boolean successful) {
+        report.add(order, entry, successful, lastError);
+        return successful || config.isContinueOnError();
+    }
 
-        try {
-            StepManager.saveStep(newStep);
-            return true;
+    /**
+     * save the collected process properties and METS changes of all entries. If continueOnError is configured, both are saved even if some entries
+     * failed.
+     * 
+     * @param result true if all entries were handled so far
+     * @return true if all entries are successfully saved, false otherwise
+     */
+    private boolean saveEntries(boolean result) {
+        if (!config.isContinueOnError()) {
+            return result && saveProcessProperties() && saveMetadataChanges();
+        }
+        boolean propertiesSaved = saveProcessProperties();
+        boolean metadataSaved = saveMetadataChanges();
+        return result && propertiesSaved && metadataSaved && report.getFailedCount() == 0;
+    }
 
-        } catch (DAOException e) {
-            String message = "Failed to save the duplicated new step: " + newStep.getTitel();
-            logBoth(this.processId, LogType.ERROR, message);
-            e.printStackTrace();
-            return false;
+    /**
+     * 
+     * @return the executor that saves process properties in parallel, it is created on first use
+     */
+    private ExecutorService getPropertyExecutor() {
+        if (propertyExecutor == null) {
+            propertyExecutor = Executors.newFixedThreadPool(config.getParallelSaves());
+        }
+        return propertyExecutor;
+    }
 
-        } catch (Exception e) {
-            String message = "Unknown exception caught while trying to save the duplicated new step: " + newStep.getTitel();
-            logBoth(this.processId, LogType.ERROR, message);
-            e.printStackTrace();
-            return false;
+    private void shutdownPropertyExecutor() {
+        if (propertyExecutor != null) {
+            propertyExecutor.shutdown();
+            propertyExecutor = null;
         }
     }
 
@@ -475,52 +1573,180 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
      * 
      * @param name name of the new Metadata or ProcessProperty that is to be created
      * @param value value of the new Metadata or ProcessProperty that is to be created
-     * @param type three options for now: person | metadata | property. Can be extended further if needed.
+     * @param type three options for now: person | metadata | property. Can be extended further if needed. The type json is handled separately.
+     * @param order index of the entry, used to report failures
      * @return true if the Metadata or ProcessProperty is successfully added, false otherwise
      */
-    private boolean addProcessPropertyOrMetadata(String name, String value, String type) {
+    private boolean addProcessPropertyOrMetadata(String name, String value, String type, int order) {
+        metrics.addEntries(1);
         switch (type.toLowerCase()) {
             case "person":
-            case "metadata":
-                return addMetadata(name, value, type);
+            case "metadata": {
+                long start = System.nanoTime();
+                boolean added = addMetadata(name, value, type);
+                metrics.addMetadataTime(System.nanoTime() - start);
+                return added;
+            }
             case "property":
-                return addProcessProperty(name, value);
+                return addProcessProperty(name, value, order);
             default:
                 // unknown type
-                String message = "Unknown type '" + type + "'. Allowed types are metadata | person | property";
+                String message = "Unknown type '" + type + "'. Allowed types are metadata | person | property | json";
                 logBoth(this.processId, LogType.ERROR, message);
                 return false;
         }
     }
 
     /**
-     * add a process property to the process
+     * add a process property to the process, the property will be saved by saveProcessProperties
      * 
      * @param name property name
      * @param value property value
      * @return true if the process property is successfully created and added, false otherwise
      */
     private boolean addProcessProperty(String name, String value) {
+        return addProcessProperty(name, value, 0);
+    }
+
+    /**
+     * add a process property to the process, the property will be saved by saveProcessProperties
+     * 
+     * @param name property name
+     * @param value property value
+     * @param order index of the entry the property belongs to, used to report failures
+     * @return true if the process property is successfully created and added, false otherwise
+     */
+    private boolean addProcessProperty(String name, String value, int order) {
         log.debug("adding process property '" + name + "' with value '" + value + "'");
         try {
             Processproperty property = new Processproperty();
             property.setTitel(name);
             property.setWert(value);
             property.setProzess(this.process);
-            PropertyManager.saveProcessProperty(property);
+            pendingProperties.add(property);
+            pendingOrders.add(order);
 
             return true;
 
         } catch (Exception e) {
-            String message = "Unknown exception caught while trying to add the process property: " + name;
-            logBoth(this.processId, LogType.ERROR, message);
+            String message = "Unknown exception caught while trying to add the process property";
+            logBoth(this.processId, LogType.ERROR, message, name);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * change the value of a process property that already exists
+     * 
+     * @param property process property
+     * @param value new value
+     * @return true if the process property is successfully saved, false otherwise
+     */
+    private boolean updateProcessProperty(GoobiProperty property, String value) {
+        log.debug("updating process property '" + property.getNormalizedTitle() + "' with value '" + value + "'");
+        try {
+            property.setWert(value);
+            store.saveProperty(property);
+            return true;
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to update the process property";
+            logBoth(this.processId, LogType.ERROR, message, property.getNormalizedTitle());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * delete a process property that belongs to an entry which does not exist anymore
+     * 
+     * @param property process property
+     * @return true if the process property is successfully deleted, false otherwise
+     */
+    private boolean deleteProcessProperty(GoobiProperty property) {
+        log.debug("deleting process property '" + property.getNormalizedTitle() + "'");
+        try {
+            store.deleteProperty(property);
+            process.getEigenschaften().remove(property);
+            return true;
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to delete the process property";
+            logBoth(this.processId, LogType.ERROR, message, property.getNormalizedTitle());
             e.printStackTrace();
             return false;
         }
     }
 
     /**
-     * add a metadata to the METS file
+     * save all process properties that are still pending. Goobi saves each property with its own insert, so they can not be saved with fewer
+     * database round trips. If continueOnError is configured, they are saved in parallel and a failing property does not stop the others.
+     * 
+     * @return true if there was nothing to save or all pending process properties are successfully saved, false otherwise
+     */
+    private boolean saveProcessProperties() {
+        try {
+            if (config.isContinueOnError()) {
+                return saveProcessPropertiesInParallel();
+            }
+            for (int i = 0; i < pendingProperties.size(); ++i) {
+                Processproperty property = pendingProperties.get(i);
+                try {
+                    store.saveProcessProperty(property);
+                    savedProperties.add(property);
+                } catch (Exception e) {
+                    String message = "Failed to save the process property";
+                    logBoth(this.processId, LogType.ERROR, message, property.getTitel());
+                    e.printStackTrace();
+                    int notSaved = pendingProperties.size() - i - 1;
+                    if (notSaved > 0) {
+                        logBoth(this.processId, LogType.ERROR, "The following process properties are not saved: " + notSaved);
+                    }
+                    return false;
+                }
+            }
+            return true;
+
+        } finally {
+            pendingProperties = new ArrayList<>();
+            pendingOrders = new ArrayList<>();
+        }
+    }
+
+    /**
+     * save all pending process properties on the executor and wait until all of them are done, a failing property is reported as failure of its
+     * entry
+     * 
+     * @return true if all pending process properties are successfully saved, false otherwise
+     */
+    private boolean saveProcessPropertiesInParallel() {
+        List<Future<?>> futures = new ArrayList<>(pendingProperties.size());
+        for (Processproperty property : pendingProperties) {
+            futures.add(getPropertyExecutor().submit(() -> store.saveProcessProperty(property)));
+        }
+        boolean result = true;
+        for (int i = 0; i < futures.size(); ++i) {
+            String name = pendingProperties.get(i).getTitel();
+            try {
+                futures.get(i).get();
+                savedProperties.add(pendingProperties.get(i));
+                continue;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String message = "Failed to save the process property";
+            logBoth(this.processId, LogType.ERROR, message, name);
+            report.markFailed(pendingOrders.get(i), message + ": " + name);
+            result = false;
+        }
+        return result;
+    }
+
+    /**
+     * add a metadata to the logical DocStruct of the METS file, the changes will only be saved by calling saveMetadataChanges
      * 
      * @param name name of the new metadata's type
      * @param value value of the new metadata
@@ -530,10 +1756,17 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
     private boolean addMetadata(String name, String value, String type) {
         log.debug("adding metadata '" + name + "' with value '" + value + "'");
         try {
-            Fileformat fileformat = process.readMetadataFile();
-            DigitalDocument dd = fileformat.getDigitalDocument();
-            DocStruct logical = dd.getLogicalDocStruct();
-            MetadataType mdType = prefs.getMetadataTypeByName(name);
+            if (logical == null) {
+                loadMetadataFile();
+            }
+            if (metadataTargetsAllowed == null) {
+                // the ruleset is checked before any I/O, only the occurrences on the logical DocStruct need the METS file
+                metadataTargetsAllowed = validateMetadataTargets() && checkAllowedOccurrences();
+            }
+            if (!metadataTargetsAllowed) {
+                return false;
+            }
+            MetadataType mdType = MetadataTypes.get(prefs, name);
             boolean isPerson = "person".equalsIgnoreCase(type);
             Metadata md = createMetadata(mdType, value.trim(), isPerson);
             if (isPerson) {
@@ -541,8 +1774,8 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
             } else {
                 logical.addMetadata(md);
             }
+            metadataChanged = true;
 
-            process.writeMetadataFile(fileformat);
             return true;
 
         } catch (ReadException | IOException | SwapException e) {
@@ -561,10 +1794,129 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
 
         } catch (MetadataTypeNotAllowedException e) {
             // createMetadata
-            String message = "MetadataType '" + name + "' is not allowed.";
-            logBoth(this.processId, LogType.ERROR, message);
+            String message = "MetadataType is not allowed";
+            logBoth(this.processId, LogType.ERROR, message, name);
+            e.printStackTrace();
+            return false;
+
+        } catch (Exception e) {
+            String message = "Unknown exception caught while trying to add the metadata";
+            logBoth(this.processId, LogType.ERROR, message, name);
             e.printStackTrace();
             return false;
+        }
+    }
+
+    /**
+     * check if the target is metadata or person
+     * 
+     * @return true if the parts shall be saved into the METS file, false otherwise
+     */
+    private boolean isMetadataTarget() {
+        return "metadata".equalsIgnoreCase(config.getTargetType()) || "person".equalsIgnoreCase(config.getTargetType());
+    }
+
+    /**
+     * check that all metadata types that would be created are defined in the ruleset and match the target type, without reading the METS file
+     * 
+     * @return true if all metadata types are valid, false otherwise
+     */
+    private boolean validateMetadataTargets() {
+        if (metadataTargets != null) {
+            return true;
+        }
+        Map<String, Integer> targets = new HashMap<>();
+        int count = countEntries(properties);
+        String baseName = StringUtils.isBlank(config.getTargetName()) ? config.getPropertyName() : config.getTargetName();
+        for (int order = 1; order <= count; ++order) {
+            String name;
+            if (config.isStepDuplicationEnabled() && stepToDuplicate != null) {
+                name = getTargetNameForDuplicate(stepToDuplicate.getTitel(), order);
+            } else {
+                name = config.isUseIndex() ? getNewTitleWithOrder(baseName, order) : baseName;
+            }
+            targets.merge(name, 1, Integer::sum);
+        }
+
+        boolean isPerson = "person".equalsIgnoreCase(config.getTargetType());
+        for (String name : targets.keySet()) {
+            MetadataType mdType = MetadataTypes.get(prefs, name);
+            if (mdType == null) {
+                logBoth(processId, LogType.ERROR, "The metadata type is not defined in the ruleset", name);
+                return false;
+            }
+            if (mdType.getIsPerson() != isPerson) {
+                String message = isPerson ? "The metadata type is not a person" : "The metadata type is a person, use the target type person instead";
+                logBoth(processId, LogType.ERROR, message, name);
+                return false;
+            }
+        }
+        metadataTargets = targets;
+        return true;
+    }
+
+    /**
+     * check that the logical DocStruct allows all metadata that would be created, the METS file must be loaded already
+     * 
+     * @return true if all metadata are allowed, false otherwise
+     */
+    private boolean checkAllowedOccurrences() {
+        DocStructType docStructType = logical.getType();
+        for (Map.Entry<String, Integer> target : metadataTargets.entrySet()) {
+            MetadataType mdType = MetadataTypes.get(prefs, target.getKey());
+            String allowed = docStructType.getNumberOfMetadataType(mdType);
+            if (allowed == null || "0".equals(allowed)) {
+                logBoth(processId, LogType.ERROR, "The metadata type is not allowed for the logical element " + docStructType.getName(),
+                        target.getKey());
+                return false;
+            }
+            if (allowed.startsWith("1")) {
+                // "1m" and "1o" allow only one metadata of this type
+                int existing;
+                if (mdType.getIsPerson()) {
+                    List<Person> persons = logical.getAllPersonsByType(mdType);
+                    existing = persons == null ? 0 : persons.size();
+                } else {
+                    existing = logical.countMDofthisType(target.getKey());
+                }
+                if (existing + target.getValue() > 1) {
+                    logBoth(processId, LogType.ERROR, "The logical element " + docStructType.getName() + " allows only one metadata of this type",
+                            target.getKey());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * read the METS file of the process once and keep its logical DocStruct for all following calls of addMetadata
+     * 
+     * @throws ReadException
+     * @throws IOException
+     * @throws SwapException
+     * @throws PreferencesException
+     */
+    private void loadMetadataFile() throws ReadException, IOException, SwapException, PreferencesException {
+        fileformat = store.readMetadataFile(process);
+        DigitalDocument dd = fileformat.getDigitalDocument();
+        logical = dd.getLogicalDocStruct();
+    }
+
+    /**
+     * write the METS file if metadata were added during this run
+     * 
+     * @return true if there was nothing to save or the METS file is successfully saved, false otherwise
+     */
+    private boolean saveMetadataChanges() {
+        if (fileformat == null || !metadataChanged) {
+            // no metadata added, nothing to save
+            return true;
+        }
+
+        try {
+            store.writeMetadataFile(process, fileformat);
+            return true;
 
         } catch (WriteException e) {
             // writeMetadataFile
@@ -574,10 +1926,15 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
             return false;
 
         } catch (Exception e) {
-            String message = "Unknown exception caught while trying to add the metadata: " + name;
+            String message = "Unknown exception caught while trying to save the changes into METS file.";
             logBoth(this.processId, LogType.ERROR, message);
             e.printStackTrace();
             return false;
+
+        } finally {
+            fileformat = null;
+            logical = null;
+            metadataChanged = false;
         }
     }
 
@@ -610,42 +1967,30 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
     }
 
     /**
-     * deactivate the input step
      * 
-     * @param step step that shall be deactivated
-     * @return true if the step is successfully deactivated, false otherwise
+     * @param processId
+     * @param logType
+     * @param message message to be shown to both terminal and journal
      */
-    private boolean deactivateStep(Step step) {
-        try {
-            step.setBearbeitungsstatusEnum(StepStatus.DEACTIVATED);
-            StepManager.saveStep(step);
-            log.debug("The step with title '" + step.getTitel() + "' is deactivated.");
-            return true;
-
-        } catch (DAOException e) {
-            String message = "Failed to deactivate the step: " + step.getTitel();
-            logBoth(this.processId, LogType.ERROR, message);
-            e.printStackTrace();
-            return false;
-
-        } catch (Exception e) {
-            String message = "Unknown exception caught while trying to deactivate the step: " + step.getTitel();
-            logBoth(this.processId, LogType.ERROR, message);
-            e.printStackTrace();
-            return false;
-        }
+    private void logBoth(int processId, LogType logType, String message) {
+        logBoth(processId, logType, message, null);
     }
 
     /**
+     * log the message to the terminal immediately, and collect it for the journal, which is written at the end of the run. Repeated messages are
+     * coalesced there.
      * 
      * @param processId
      * @param logType
      * @param message message to be shown to both terminal and journal
+     * @param entry the entry that is affected, may be null
      */
-    private void logBoth(int processId, LogType logType, String message) {
-        String logMessage = "Task Duplication Plugin: " + message;
+    private void logBoth(int processId, LogType logType, String message, String entry) {
+        String logMessage = "Task Duplication Plugin: " + message + (entry == null ? "" : ": " + entry);
         switch (logType) {
             case ERROR:
+                metrics.addFailure();
+                lastError = message;
                 log.error(logMessage);
                 break;
             case DEBUG:
@@ -659,7 +2004,27 @@ public class DuplicateTasksStepPlugin implements IStepPluginVersion2 {
                 break;
         }
         if (processId > 0) {
-            Helper.addMessageToProcessJournal(processId, logType, logMessage);
+            journal.add(logType, message, entry);
+        }
+    }
+
+    /**
+     * close the file of the parts, if iterations were stopped before they reached its end
+     */
+    private void closeValueFile() {
+        if (valueFile != null) {
+            valueFile.close();
+        }
+    }
+
+    /**
+     * write all collected messages as one entry into the journal of the process
+     */
+    private void flushJournal() {
+        if (journal.isEmpty()) {
+            return;
         }
+        Helper.addMessageToProcessJournal(processId, journal.getMostSevereType(), "Task Duplication Plugin: " + journal.getText());
+        journal.clear();
     }
 }
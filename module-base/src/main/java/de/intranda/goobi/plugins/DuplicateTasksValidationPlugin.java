@@ -0,0 +1,180 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginType;
+import org.goobi.production.plugin.interfaces.IValidatorPlugin;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.persistence.managers.StepManager;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+import net.xeoh.plugins.base.annotations.PluginImplementation;
+
+/**
+ * Companion plugin that is called whenever a duplicated step is closed. It has to be configured as validation plugin of the step that is
+ * duplicated, so that every duplicate inherits it. It never prevents a step from being closed.
+ * 
+ * Goobi calls the plugin before its other checks of the close, so the close may still be rejected afterwards. That's why nothing is changed
+ * during the validation: the duplicate is read again in the background, and only once its status is DONE the close is counted.
+ * 
+ * If the duplication runs in windowed mode, the next duplicates are created as soon as earlier ones are closed. If a join step is configured,
+ * it is opened as soon as all duplicates are closed.
+ */
+@PluginImplementation
+@Log4j2
+public class DuplicateTasksValidationPlugin implements IValidatorPlugin {
+
+    // titles of duplicated steps look like "<title of the duplicated step> [<index>]"
+    static final Pattern DUPLICATE_TITLE = Pattern.compile("^(.+) \\[(\\d+)\\]$");
+
+    // the duplicate is read again every two seconds, for at most one minute
+    private static final long RECHECK_DELAY_SECONDS = 2;
+    private static final int RECHECK_ATTEMPTS = 30;
+
+    private static final ScheduledExecutorService CLOSE_HANDLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "intranda_validation_duplicate_tasks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // ids of the duplicates whose close is already waiting to be handled
+    private static final Set<Integer> WAITING_CLOSES = ConcurrentHashMap.newKeySet();
+
+    @Getter
+    private String title = "intranda_validation_duplicate_tasks";
+    @Getter
+    @Setter
+    private Step step;
+
+    @Override
+    public PluginType getType() {
+        return PluginType.Validation;
+    }
+
+    @Override
+    public void initialize(Process inProcess) {
+        // nothing to initialize, everything is taken from the step
+    }
+
+    @Override
+    public boolean validate() {
+        if (step == null) {
+            return true;
+        }
+        Matcher matcher = DUPLICATE_TITLE.matcher(step.getTitel());
+        if (!matcher.matches()) {
+            // not a duplicated step
+            return true;
+        }
+
+        try {
+            DuplicationState state = DuplicationState.load(step.getProzess(), matcher.group(1));
+            if (state != null && state.isPending() && WAITING_CLOSES.add(step.getId())) {
+                scheduleClose(step.getId(), 1);
+            }
+
+        } catch (Exception e) {
+            // never block the closing of the step
+            log.error("Task Duplication Plugin: failed to handle the closing of the step " + step.getTitel(), e);
+        }
+        return true;
+    }
+
+    /**
+     * check the input duplicate again after a short delay
+     * 
+     * @param stepId id of the duplicate that is being closed
+     * @param attempt number of the check, starting with 1
+     */
+    private static void scheduleClose(int stepId, int attempt) {
+        CLOSE_HANDLER.schedule(() -> handleClose(stepId, attempt), RECHECK_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * read the input duplicate again and count its close, if the close is committed. As long as the step is still open or in work, the close is
+     * either not committed yet or it was rejected, so it is checked again later.
+     * 
+     * @param stepId id of the duplicate that is being closed
+     * @param attempt number of the check, starting with 1
+     */
+    private static void handleClose(int stepId, int attempt) {
+        boolean retry = false;
+        try {
+            Step closingStep = StepManager.getStepById(stepId);
+            if (closingStep == null) {
+                return;
+            }
+            StepStatus status = closingStep.getBearbeitungsstatusEnum();
+            if (status == StepStatus.OPEN || status == StepStatus.INWORK) {
+                retry = attempt < RECHECK_ATTEMPTS;
+                if (!retry) {
+                    log.debug("Task Duplication Plugin: the step " + closingStep.getTitel() + " was not closed, it is not counted");
+                }
+                return;
+            }
+            if (status != StepStatus.DONE) {
+                return;
+            }
+
+            Matcher matcher = DUPLICATE_TITLE.matcher(closingStep.getTitel());
+            Process process = closingStep.getProzess();
+            DuplicationState state = matcher.matches() ? DuplicationState.load(process, matcher.group(1)) : null;
+            if (state == null || !state.isPending()) {
+                return;
+            }
+
+            DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+            Step pluginStep = StepManager.getStepById(state.getPluginStepId());
+            DuplicateTasksConfiguration config = DuplicateTasksConfiguration.get(plugin.getTitle(), pluginStep);
+            try (ProcessLocks.Lock lock = ProcessLocks.tryAcquire(process.getId(), config.getLockTimeout(), config.isDatabaseLock(),
+                    config.getDatabaseLockConnections())) {
+                if (lock == null) {
+                    log.error("Task Duplication Plugin: timed out waiting for the lock of the process " + process.getId());
+                    return;
+                }
+                // load the step again, so that the process and its state are read while the lock is held
+                pluginStep = StepManager.getStepById(state.getPluginStepId());
+                plugin.initialize(pluginStep, "");
+                plugin.handleClosedDuplicate(closingStep);
+            }
+
+        } catch (Exception e) {
+            log.error("Task Duplication Plugin: failed to handle the closing of the step " + stepId, e);
+        } finally {
+            if (retry) {
+                scheduleClose(stepId, attempt + 1);
+            } else {
+                WAITING_CLOSES.remove(stepId);
+            }
+        }
+    }
+}
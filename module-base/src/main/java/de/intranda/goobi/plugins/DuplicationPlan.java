@@ -0,0 +1,79 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Result of a dry run: what a run of the plugin would create, without anything being saved.
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+public class DuplicationPlan {
+
+    // approximate size of the XML of one metadata element in the METS file, without its name and value
+    static final int METADATA_OVERHEAD_BYTES = 60;
+    // approximate size of the XML of one person element in the METS file, without its name and value
+    static final int PERSON_OVERHEAD_BYTES = 160;
+
+    // number of entries after splitting, and chunking if configured
+    private int entries;
+    // number of steps that would be created now
+    private int newSteps;
+    // number of process properties that would be created
+    private int newProperties;
+    // number of metadata or persons that would be added to the METS file
+    private int newMetadata;
+    // number of times the METS file would be written
+    private int metsWrites;
+    // estimated number of bytes the METS file would grow
+    private long estimatedMetsGrowth;
+    // estimated number of database writes
+    private int databaseWrites;
+    // false if the step that shall be duplicated could not be found
+    private boolean stepToDuplicateFound = true;
+
+    /**
+     * 
+     * @return a single line describing this plan
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder("Dry run: ");
+        sb.append(entries).append(" entries, ");
+        if (!stepToDuplicateFound) {
+            sb.append("no step to duplicate found, ");
+        }
+        sb.append(newSteps)
+                .append(" new steps, ")
+                .append(newProperties)
+                .append(" new properties, ")
+                .append(newMetadata)
+                .append(" new metadata, ")
+                .append(metsWrites)
+                .append(" METS writes, about ")
+                .append(estimatedMetsGrowth)
+                .append(" bytes METS growth, about ")
+                .append(databaseWrites)
+                .append(" database writes");
+        return sb.toString();
+    }
+}
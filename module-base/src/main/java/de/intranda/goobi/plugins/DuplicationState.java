@@ -0,0 +1,198 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * State of a duplication that is stored as JSON in a process property, so that later calls can continue where the first run stopped. It also
+ * tracks which duplicates are still open, so that closing a duplicate only needs to update this state instead of querying all duplicates.
+ */
+@Log4j2
+@Getter
+@Setter
+public class DuplicationState {
+
+    // name of the process property is this prefix followed by the title of the duplicated step
+    public static final String PROPERTY_PREFIX = "DuplicateTasks ";
+
+    private static final Gson GSON = new Gson();
+
+    // id of the step that runs this plugin
+    private int pluginStepId;
+    // id of the step that is duplicated
+    private int templateStepId;
+    // number of all duplicates that shall exist in the end
+    private int total;
+    // number of duplicates that are already created
+    private int created;
+    // maximum number of duplicates that shall be open at the same time
+    private int window;
+    // ids of the duplicates that are created but not closed yet
+    private Set<Integer> openDuplicateIds = new LinkedHashSet<>();
+    // id of the step that shall be opened as soon as all duplicates are closed, 0 if there is none
+    private int joinStepId;
+    // true if the join step is already opened
+    private boolean joined;
+    // hash of all parts, so that later duplicates and entries are not created from parts that have changed in the meantime
+    private String partsHash;
+    // indexes of the entries that failed with continueOnError, the next run only handles these again
+    private Set<Integer> failedEntries = new LinkedHashSet<>();
+
+    // process property holding this state, null if it is not saved yet
+    private transient GoobiProperty property;
+
+    /**
+     * load the state of the duplication of the input step
+     * 
+     * @param process Goobi process
+     * @param templateTitle title of the duplicated step
+     * @return the state, or null if there is none
+     */
+    public static DuplicationState load(Process process, String templateTitle) {
+        String name = (PROPERTY_PREFIX + templateTitle).replace(" ", "_");
+        for (GoobiProperty goobiProperty : process.getEigenschaften()) {
+            if (name.equals(goobiProperty.getNormalizedTitle())) {
+                try {
+                    DuplicationState state = GSON.fromJson(goobiProperty.getWert(), DuplicationState.class);
+                    if (state != null) {
+                        state.property = goobiProperty;
+                    }
+                    return state;
+                } catch (JsonParseException e) {
+                    log.error("The duplication state of the step '" + templateTitle + "' can not be parsed.");
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * calculate the hash of all parts, it changes as soon as a part is added, removed, changed or moved
+     * 
+     * @param parts all parts of the duplication
+     * @return hex encoded SHA-256 hash
+     */
+    public static String hashParts(Iterable<String> parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            // parts can not contain this character, so that "ab", "c" and "a", "bc" differ
+            digest.update((byte) 0);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * remember duplicates that were just created
+     * 
+     * @param ids ids of the new duplicates
+     */
+    public void addOpenDuplicates(Collection<Integer> ids) {
+        if (openDuplicateIds == null) {
+            openDuplicateIds = new LinkedHashSet<>();
+        }
+        openDuplicateIds.addAll(ids);
+    }
+
+    /**
+     * forget a duplicate that is closed, calling this again for the same duplicate changes nothing
+     * 
+     * @param id id of the closed duplicate
+     * @return true if the duplicate was open before, false otherwise
+     */
+    public boolean closeDuplicate(Integer id) {
+        return openDuplicateIds != null && id != null && openDuplicateIds.remove(id);
+    }
+
+    /**
+     * 
+     * @return true if all duplicates are created and closed
+     */
+    public boolean isComplete() {
+        return created >= total && (openDuplicateIds == null || openDuplicateIds.isEmpty());
+    }
+
+    /**
+     * 
+     * @return true if entries failed with continueOnError and are not handled yet
+     */
+    public boolean hasFailedEntries() {
+        return failedEntries != null && !failedEntries.isEmpty();
+    }
+
+    /**
+     * 
+     * @return true if closing a duplicate can still change something, i.e. create further duplicates or open the join step
+     */
+    public boolean isPending() {
+        return (window > 0 && created < total) || (openDuplicateIds != null && !openDuplicateIds.isEmpty()) || (joinStepId > 0 && !joined);
+    }
+
+    /**
+     * save this state into its process property, which will be created if it does not exist yet
+     * 
+     * @param process Goobi process
+     * @param templateTitle title of the duplicated step
+     * @param store persistence of the plugin that is used to save the property
+     */
+    void save(Process process, String templateTitle, DuplicationStore store) {
+        String json = GSON.toJson(this);
+        if (property == null) {
+            Processproperty newProperty = new Processproperty();
+            newProperty.setTitel(PROPERTY_PREFIX + templateTitle);
+            newProperty.setWert(json);
+            newProperty.setProzess(process);
+            store.saveProcessProperty(newProperty);
+            process.getEigenschaften().add(newProperty);
+            property = newProperty;
+        } else {
+            property.setWert(json);
+            store.saveProperty(property);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import ugh.dl.Fileformat;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+
+/**
+ * All persistence calls of the plugin. The default implementation GoobiDuplicationStore uses the Goobi managers, other implementations can be
+ * used to measure the plugin without a database.
+ */
+interface DuplicationStore {
+
+    /**
+     * read the input step and its process again, so that changes that were made in the meantime are seen
+     * 
+     * @param step step that was read before
+     * @return the step as it is stored now, or null if it does not exist anymore
+     */
+    Step reloadStep(Step step);
+
+    void saveStep(Step step) throws DAOException;
+
+    void deleteStep(Step step) throws DAOException;
+
+    void saveProcessProperty(Processproperty property);
+
+    void saveProperty(GoobiProperty property);
+
+    void deleteProperty(GoobiProperty property);
+
+    Fileformat readMetadataFile(Process process) throws ReadException, IOException, SwapException, PreferencesException;
+
+    void writeMetadataFile(Process process, Fileformat fileformat) throws WriteException, PreferencesException, IOException, SwapException;
+
+    /**
+     * 
+     * @param process Goobi process
+     * @return size of the METS file in bytes, or 0 if it can not be determined
+     */
+    long getMetadataFileSize(Process process);
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Result of each entry of one run, so that failed entries can be identified without repeating the whole run.
+ */
+public class EntryReport {
+
+    // number of failed entries that are listed in the summary
+    private static final int MAX_LISTED_FAILURES = 20;
+
+    // key is the index of the entry
+    private final Map<Integer, Result> results = new TreeMap<>();
+
+    /**
+     * record the result of an entry
+     * 
+     * @param order index of the entry, starting with 1
+     * @param entry value of the entry
+     * @param successful true if the entry was saved, false otherwise
+     * @param message reason of the failure, may be null
+     */
+    void add(int order, String entry, boolean successful, String message) {
+        results.put(order, new Result(order, entry, successful, successful ? null : message));
+    }
+
+    /**
+     * mark an entry as failed after it was recorded, e.g. when its process property could not be saved
+     * 
+     * @param order index of the entry
+     * @param message reason of the failure
+     */
+    void markFailed(int order, String message) {
+        Result result = results.get(order);
+        if (result != null) {
+            result.successful = false;
+            result.message = message;
+        }
+    }
+
+    /**
+     * 
+     * @return results of all entries, ordered by their index
+     */
+    public List<Result> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    public int getFailedCount() {
+        return getFailedOrders().size();
+    }
+
+    /**
+     * 
+     * @return indexes of the failed entries in ascending order
+     */
+    public Set<Integer> getFailedOrders() {
+        Set<Integer> failed = new LinkedHashSet<>();
+        for (Result result : results.values()) {
+            if (!result.successful) {
+                failed.add(result.order);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 
+     * @return one line with the numbers of successful and failed entries and the indexes of the first failed ones
+     */
+    public String getSummary() {
+        List<Integer> failed = new ArrayList<>(getFailedOrders());
+        StringBuilder summary = new StringBuilder();
+        summary.append("Entries: ").append(results.size() - failed.size()).append(" successful, ").append(failed.size()).append(" failed");
+        if (!failed.isEmpty()) {
+            summary.append(" (");
+            for (int i = 0; i < failed.size() && i < MAX_LISTED_FAILURES; ++i) {
+                summary.append(i > 0 ? ", " : "").append(failed.get(i));
+            }
+            summary.append(failed.size() > MAX_LISTED_FAILURES ? ", ...)" : ")");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * result of a single entry
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        // index of the entry, matching the index of its duplicated step
+        private int order;
+        private String entry;
+        private boolean successful;
+        // reason of the failure, null if the entry was saved
+        private String message;
+    }
+}
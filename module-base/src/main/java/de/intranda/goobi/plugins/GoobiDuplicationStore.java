@@ -0,0 +1,93 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import de.sub.goobi.persistence.managers.PropertyManager;
+import de.sub.goobi.persistence.managers.StepManager;
+import ugh.dl.Fileformat;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+
+/**
+ * DuplicationStore that uses the Goobi managers and the METS file of the process.
+ */
+class GoobiDuplicationStore implements DuplicationStore {
+
+    @Override
+    public Step reloadStep(Step step) {
+        return StepManager.getStepById(step.getId());
+    }
+
+    @Override
+    public void saveStep(Step step) throws DAOException {
+        StepManager.saveStep(step);
+    }
+
+    @Override
+    public void deleteStep(Step step) throws DAOException {
+        StepManager.deleteStep(step);
+    }
+
+    @Override
+    public void saveProcessProperty(Processproperty property) {
+        PropertyManager.saveProcessProperty(property);
+    }
+
+    @Override
+    public void saveProperty(GoobiProperty property) {
+        PropertyManager.saveProperty(property);
+    }
+
+    @Override
+    public void deleteProperty(GoobiProperty property) {
+        PropertyManager.deleteProperty(property);
+    }
+
+    @Override
+    public Fileformat readMetadataFile(Process process) throws ReadException, IOException, SwapException, PreferencesException {
+        return process.readMetadataFile();
+    }
+
+    @Override
+    public void writeMetadataFile(Process process, Fileformat fileformat) throws WriteException, PreferencesException, IOException, SwapException {
+        process.writeMetadataFile(fileformat);
+    }
+
+    @Override
+    public long getMetadataFileSize(Process process) {
+        try {
+            return Files.size(Paths.get(process.getMetadataFilePath()));
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.goobi.production.enums.LogType;
+
+/**
+ * Collects the journal messages of one run. Repeated messages are coalesced into one line with the number of occurrences and the first affected
+ * entries, so that the whole run can be written into the journal at once.
+ */
+class JournalBuffer {
+
+    // number of affected entries that are listed for each coalesced message
+    static final int MAX_LISTED_ENTRIES = 5;
+
+    // key is the log type followed by the message
+    private final Map<String, BufferedMessage> messages = new LinkedHashMap<>();
+
+    /**
+     * add a message
+     * 
+     * @param logType type of the message
+     * @param message message without the affected entry
+     * @param entry affected entry, may be null
+     */
+    void add(LogType logType, String message, String entry) {
+        BufferedMessage buffered = messages.computeIfAbsent(logType + message, k -> new BufferedMessage(logType, message));
+        ++buffered.count;
+        if (entry != null && buffered.entries.size() < MAX_LISTED_ENTRIES) {
+            buffered.entries.add(entry);
+        }
+    }
+
+    boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    void clear() {
+        messages.clear();
+    }
+
+    /**
+     * 
+     * @return the most severe log type of all messages, used as type of the journal entry
+     */
+    LogType getMostSevereType() {
+        LogType result = LogType.DEBUG;
+        for (BufferedMessage buffered : messages.values()) {
+            if (getSeverity(buffered.logType) > getSeverity(result)) {
+                result = buffered.logType;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 
+     * @return all messages, one line per coalesced message
+     */
+    String getText() {
+        StringBuilder sb = new StringBuilder();
+        for (BufferedMessage buffered : messages.values()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(buffered.message);
+            if (buffered.count > 1) {
+                sb.append(" (").append(buffered.count).append("x)");
+            }
+            if (!buffered.entries.isEmpty()) {
+                sb.append(": ").append(String.join(", ", buffered.entries));
+                if (buffered.count > buffered.entries.size()) {
+                    sb.append(", ...");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int getSeverity(LogType logType) {
+        switch (logType) {
+            case ERROR:
+                return 3;
+            case WARN:
+                return 2;
+            case INFO:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static class BufferedMessage {
+        private final LogType logType;
+        private final String message;
+        private final List<String> entries = new ArrayList<>();
+        private int count;
+
+        private BufferedMessage(LogType logType, String message) {
+            this.logType = logType;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+/**
+ * Set of primitive long values using open addressing, it needs 8 to 16 bytes per value instead of the ~50 bytes of a boxed Long in a HashSet.
+ */
+class LongHashSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 0 marks a free slot, so the value 0 itself is tracked separately
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private boolean containsZero;
+    private int size;
+
+    /**
+     * add a value to the set
+     * 
+     * @param value the value
+     * @return true if the value was not in the set yet, false otherwise
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            if (added) {
+                ++size;
+            }
+            return added;
+        }
+        if (2 * (size + 1) > slots.length) {
+            resize();
+        }
+        if (insert(slots, value)) {
+            ++size;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 
+     * @param value the value
+     * @return true if the value is in the set, false otherwise
+     */
+    boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int mask = slots.length - 1;
+        int index = indexOf(value, mask);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] newSlots = new long[slots.length * 2];
+        for (long value : slots) {
+            if (value != 0) {
+                insert(newSlots, value);
+            }
+        }
+        slots = newSlots;
+    }
+
+    private static boolean insert(long[] slots, long value) {
+        int mask = slots.length - 1;
+        int index = indexOf(value, mask);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        return true;
+    }
+
+    private static int indexOf(long value, int mask) {
+        return (int) (value ^ (value >>> 32)) & mask;
+    }
+}
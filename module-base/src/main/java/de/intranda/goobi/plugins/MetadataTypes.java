@@ -0,0 +1,55 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ugh.dl.MetadataType;
+import ugh.dl.Prefs;
+
+/**
+ * Cache of the metadata types of each ruleset, so that a type is only looked up once per ruleset instead of once per new metadata. Rulesets that
+ * are not used anymore are removed from the cache by the garbage collector.
+ */
+class MetadataTypes {
+
+    private static final Map<Prefs, Map<String, Optional<MetadataType>>> CACHE = new WeakHashMap<>();
+
+    private MetadataTypes() {
+    }
+
+    /**
+     * get the metadata type of the input name
+     * 
+     * @param prefs the ruleset
+     * @param name name of the metadata type
+     * @return the metadata type, or null if the ruleset does not define it
+     */
+    static MetadataType get(Prefs prefs, String name) {
+        Map<String, Optional<MetadataType>> types;
+        synchronized (CACHE) {
+            types = CACHE.computeIfAbsent(prefs, p -> new ConcurrentHashMap<>());
+        }
+        return types.computeIfAbsent(name, n -> Optional.ofNullable(prefs.getMetadataTypeByName(n))).orElse(null);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.helper.exceptions.SwapException;
+import ugh.dl.Fileformat;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+
+/**
+ * DuplicationStore that counts and times all calls of another DuplicationStore.
+ */
+class MeteredDuplicationStore implements DuplicationStore {
+
+    private final DuplicationStore store;
+    private final RunMetrics metrics;
+
+    MeteredDuplicationStore(DuplicationStore store, RunMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Step reloadStep(Step step) {
+        return store.reloadStep(step);
+    }
+
+    @Override
+    public void saveStep(Step step) throws DAOException {
+        long start = System.nanoTime();
+        try {
+            store.saveStep(step);
+        } finally {
+            metrics.addStepWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteStep(Step step) throws DAOException {
+        long start = System.nanoTime();
+        try {
+            store.deleteStep(step);
+        } finally {
+            metrics.addStepWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveProcessProperty(Processproperty property) {
+        long start = System.nanoTime();
+        try {
+            store.saveProcessProperty(property);
+        } finally {
+            metrics.addPropertyWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void saveProperty(GoobiProperty property) {
+        long start = System.nanoTime();
+        try {
+            store.saveProperty(property);
+        } finally {
+            metrics.addPropertyWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void deleteProperty(GoobiProperty property) {
+        long start = System.nanoTime();
+        try {
+            store.deleteProperty(property);
+        } finally {
+            metrics.addPropertyWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Fileformat readMetadataFile(Process process) throws ReadException, IOException, SwapException, PreferencesException {
+        long start = System.nanoTime();
+        try {
+            return store.readMetadataFile(process);
+        } finally {
+            metrics.addMetsRead(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeMetadataFile(Process process, Fileformat fileformat) throws WriteException, PreferencesException, IOException, SwapException {
+        long start = System.nanoTime();
+        store.writeMetadataFile(process, fileformat);
+        long duration = System.nanoTime() - start;
+        metrics.addMetsWrite(duration, getMetadataFileSize(process));
+    }
+
+    @Override
+    public long getMetadataFileSize(Process process) {
+        return store.getMetadataFileSize(process);
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+/**
+ * Lookup tables of the steps and properties of a process. They are built once per run, so that processes with thousands of duplicated steps and
+ * split properties do not need to be scanned again for every lookup.
+ * 
+ * Duplicates share the order of their original step, and Goobi has no field for a sub-order, so their order after loading depends on the database.
+ * That's why the steps of the process are sorted once here: by their order, then each original step before its duplicates, and the duplicates by their
+ * index.
+ */
+class ProcessIndex {
+
+    private final List<Step> steps;
+    // the first step of each title
+    private final Map<String, Step> stepsByTitle = new HashMap<>();
+    private final Map<Integer, Step> stepsById = new HashMap<>();
+    // the first property of each normalized name
+    private final Map<String, GoobiProperty> propertiesByName = new HashMap<>();
+
+    /**
+     * 
+     * @param process Goobi process
+     */
+    ProcessIndex(Process process) {
+        this.steps = process.getSchritte();
+        for (Step step : steps) {
+            addStep(step);
+        }
+        if (steps.size() > 1) {
+            sortSteps();
+        }
+        for (GoobiProperty property : process.getEigenschaften()) {
+            propertiesByName.putIfAbsent(property.getNormalizedTitle(), property);
+        }
+    }
+
+    /**
+     * add a step that was created during the run
+     * 
+     * @param step the new step
+     */
+    void addStep(Step step) {
+        stepsByTitle.putIfAbsent(step.getTitel(), step);
+        if (step.getId() != null) {
+            stepsById.putIfAbsent(step.getId(), step);
+        }
+    }
+
+    /**
+     * remove a step that was created during the run and is deleted again
+     * 
+     * @param step the deleted step
+     */
+    void removeStep(Step step) {
+        stepsByTitle.remove(step.getTitel(), step);
+        if (step.getId() != null) {
+            stepsById.remove(step.getId(), step);
+        }
+    }
+
+    Step getStepByTitle(String title) {
+        return stepsByTitle.get(title);
+    }
+
+    Step getStepById(int id) {
+        return stepsById.get(id);
+    }
+
+    /**
+     * 
+     * @param name name of the property, spaces are treated like underscores
+     * @return the first property of this name, or null if there is none
+     */
+    GoobiProperty getProperty(String name) {
+        return propertiesByName.get(name.replace(" ", "_"));
+    }
+
+    /**
+     * 
+     * @return all properties, key is their normalized name
+     */
+    Map<String, GoobiProperty> getProperties() {
+        return propertiesByName;
+    }
+
+    /**
+     * get the first step whose title matches the input pattern, duplicates are skipped
+     * 
+     * @param pattern regular expression that must match the whole title
+     * @return the first matching step, or null if there is none
+     */
+    Step getStepByPattern(Pattern pattern) {
+        for (Step step : steps) {
+            if (pattern.matcher(step.getTitel()).matches() && !isDuplicate(step)) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get the first step following the input step, duplicates of earlier runs share the order of their original step and are skipped
+     * 
+     * @param step the current step
+     * @return the next step, or null if there is none
+     */
+    Step getNextStep(Step step) {
+        int index = steps.indexOf(step);
+        if (index < 0) {
+            return null;
+        }
+        for (int i = index + 1; i < steps.size(); ++i) {
+            if (!isDuplicate(steps.get(i))) {
+                return steps.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * sort the steps by their order. Steps of the same order that are no duplicates keep their order, each duplicate follows its original step,
+     * and duplicates of the same step are sorted by their index.
+     */
+    private void sortSteps() {
+        // position of the original step of each step, and the index of each duplicate
+        Map<Step, Integer> positions = new IdentityHashMap<>();
+        Map<Step, String> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < steps.size(); ++i) {
+            positions.putIfAbsent(steps.get(i), i);
+        }
+        for (Step step : steps) {
+            Matcher matcher = DuplicateTasksValidationPlugin.DUPLICATE_TITLE.matcher(step.getTitel());
+            Step original = matcher.matches() ? stepsByTitle.get(matcher.group(1)) : null;
+            if (original != null) {
+                positions.put(step, positions.get(original));
+                indexes.put(step, matcher.group(2));
+            } else {
+                indexes.put(step, "");
+            }
+        }
+        // the indexes are compared by their length first, so that they do not need to be parsed
+        steps.sort(Comparator.comparing(Step::getReihenfolge, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(positions::get)
+                .thenComparingInt(step -> indexes.get(step).length())
+                .thenComparing(indexes::get));
+
+        // the first step of each title may have changed
+        stepsByTitle.clear();
+        stepsById.clear();
+        for (Step step : steps) {
+            addStep(step);
+        }
+    }
+
+    /**
+     * check if the input step is a duplicate of another step of the process
+     * 
+     * @param step the step that shall be checked
+     * @return true if the title of the step is the title of another step followed by an index
+     */
+    boolean isDuplicate(Step step) {
+        Matcher matcher = DuplicateTasksValidationPlugin.DUPLICATE_TITLE.matcher(step.getTitel());
+        return matcher.matches() && stepsByTitle.containsKey(matcher.group(1));
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.sub.goobi.persistence.managers.MySQLHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Locks of single processes, so that runs of this plugin for the same process can not interleave their METS and step changes, while runs for
+ * different processes stay parallel. The locks inside of the JVM are striped, i.e. a fixed number of locks is shared by all processes. Optionally
+ * a named lock of the database is held as well, which also covers other Goobi instances using the same database. Such a lock is bound to a
+ * connection of the pool, so only a limited number of them is held at the same time, and the other connections stay free for the changes that
+ * are made while the lock is held.
+ */
+@Log4j2
+public class ProcessLocks {
+
+    private static final int STRIPES = 256;
+    private static final String DATABASE_LOCK_PREFIX = "goobi_duplicate_tasks_";
+
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+    // permits for connections that are held by database locks, key is the maximum number of such connections
+    private static final Map<Integer, Semaphore> CONNECTIONS = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < STRIPES; ++i) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private ProcessLocks() {
+    }
+
+    /**
+     * wait for the lock of the input process
+     * 
+     * @param processId id of the process
+     * @param timeoutSeconds maximum time to wait for the lock
+     * @param databaseLock true if a named lock of the database shall be held as well
+     * @param maxConnections maximum number of connections that are held by database locks at the same time, it must be smaller than the pool
+     * @return the lock that must be closed after the changes, or null if the lock could not be acquired in time
+     */
+    public static Lock tryAcquire(int processId, int timeoutSeconds, boolean databaseLock, int maxConnections) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        ReentrantLock lock = LOCKS[Math.floorMod(Integer.hashCode(processId) * 0x9E3779B9, STRIPES)];
+        try {
+            if (!lock.tryLock(timeoutSeconds, TimeUnit.SECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        if (!databaseLock) {
+            return new Lock(processId, lock, null, null);
+        }
+
+        // the database lock is bound to the connection, so the connection is kept until the lock is released. Waiting for a permit does not
+        // hold a connection, so runs that hold the lock can always get the connections they need for their changes.
+        Semaphore connections = CONNECTIONS.computeIfAbsent(Math.max(1, maxConnections), k -> new Semaphore(k, true));
+        try {
+            if (!connections.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                lock.unlock();
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lock.unlock();
+            return null;
+        }
+
+        int remainingSeconds = (int) Math.max(0, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()));
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+                statement.setString(1, DATABASE_LOCK_PREFIX + processId);
+                statement.setInt(2, remainingSeconds);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next() && resultSet.getInt(1) == 1) {
+                        return new Lock(processId, lock, connection, connections);
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            log.error("Failed to get the database lock of the process " + processId, e);
+        }
+
+        closeConnection(connection);
+        connections.release();
+        lock.unlock();
+        return null;
+    }
+
+    private static void closeConnection(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            MySQLHelper.closeConnection(connection);
+        } catch (SQLException e) {
+            log.error("Failed to close the connection", e);
+        }
+    }
+
+    /**
+     * lock of one process, it must be closed by the same thread that acquired it
+     */
+    public static class Lock implements AutoCloseable {
+
+        private final int processId;
+        private final ReentrantLock lock;
+        private final Connection connection;
+        private final Semaphore connections;
+
+        private Lock(int processId, ReentrantLock lock, Connection connection, Semaphore connections) {
+            this.processId = processId;
+            this.lock = lock;
+            this.connection = connection;
+            this.connections = connections;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (connection != null) {
+                    try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                        statement.setString(1, DATABASE_LOCK_PREFIX + processId);
+                        statement.execute();
+                    } catch (SQLException e) {
+                        log.error("Failed to release the database lock of the process " + processId, e);
+                    }
+                    closeConnection(connection);
+                    connections.release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
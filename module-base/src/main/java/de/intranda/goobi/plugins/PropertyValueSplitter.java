@@ -0,0 +1,328 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Splits a value into its parts lazily. Each part is only created when it is requested, so that the whole value never has to be copied into an
+ * array of parts. Blank parts are skipped.
+ * 
+ * By default the separator is treated as a literal string, where the escape sequences \n, \r, \t and \\ are supported. Only if it is explicitly
+ * configured as a regular expression the regex engine is used.
+ * 
+ * The value can also be the content of a file, which is then read as UTF-8 while iterating. Only a buffer of the size of the longest part is kept
+ * in memory, and every iteration reads the file again. A file is closed as soon as its iteration reaches the end, iterations that are stopped
+ * earlier are closed by {@link #close()}.
+ */
+public class PropertyValueSplitter implements Iterable<String>, Closeable {
+
+    private final CharSequence value;
+    // file that contains the value, null if the value is given directly
+    private final Path file;
+    // readers of the file whose iterations have not reached the end yet
+    private final List<Scanner> openScanners = new ArrayList<>();
+    // literal separator, null if a regular expression is used
+    private final String separator;
+    // compiled regular expression, null if a literal separator is used
+    private final Pattern pattern;
+
+    /**
+     * 
+     * @param value value that shall be split
+     * @param separator separator that shall be used
+     * @param regex true if the separator is a regular expression, false if it is a literal string
+     */
+    public PropertyValueSplitter(CharSequence value, String separator, boolean regex) {
+        this(value, null, separator, regex);
+    }
+
+    /**
+     * 
+     * @param file file whose content shall be split
+     * @param separator separator that shall be used
+     * @param regex true if the separator is a regular expression, false if it is a literal string
+     */
+    public PropertyValueSplitter(Path file, String separator, boolean regex) {
+        this("", file, separator, regex);
+    }
+
+    private PropertyValueSplitter(CharSequence value, Path file, String separator, boolean regex) {
+        this.value = value == null ? "" : value;
+        this.file = file;
+        if (regex) {
+            this.pattern = Pattern.compile(separator);
+            this.separator = null;
+        } else {
+            this.pattern = null;
+            this.separator = unescape(separator);
+        }
+    }
+
+    /**
+     * replace the escape sequences \n, \r, \t and \\ by the characters they stand for
+     * 
+     * @param separator separator as it is configured
+     * @return separator that can be used literally
+     */
+    static String unescape(String separator) {
+        if (separator == null || separator.indexOf('\\') < 0) {
+            return separator;
+        }
+        StringBuilder sb = new StringBuilder(separator.length());
+        for (int i = 0; i < separator.length(); ++i) {
+            char c = separator.charAt(i);
+            if (c == '\\' && i + 1 < separator.length()) {
+                char next = separator.charAt(i + 1);
+                switch (next) {
+                    case 'n':
+                        sb.append('\n');
+                        ++i;
+                        continue;
+                    case 'r':
+                        sb.append('\r');
+                        ++i;
+                        continue;
+                    case 't':
+                        sb.append('\t');
+                        ++i;
+                        continue;
+                    case '\\':
+                        sb.append('\\');
+                        ++i;
+                        continue;
+                    default:
+                        break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 
+     * @return the separator that can be used to join parts again, \n if the separator is a regular expression
+     */
+    public String getJoinSeparator() {
+        return pattern == null ? separator : "\n";
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        if (file != null) {
+            return new FileIterator();
+        }
+        return pattern == null ? new LiteralIterator() : new RegexIterator();
+    }
+
+    /**
+     * close the file of all iterations that have not reached its end
+     */
+    @Override
+    public synchronized void close() {
+        for (Scanner scanner : openScanners) {
+            scanner.close();
+        }
+        openScanners.clear();
+    }
+
+    private synchronized Scanner openScanner() throws IOException {
+        Scanner scanner = new Scanner(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+        if (pattern != null) {
+            scanner.useDelimiter(pattern);
+        } else if (separator == null || separator.isEmpty()) {
+            // the whole content is one part
+            scanner.useDelimiter("\\z");
+        } else {
+            scanner.useDelimiter(Pattern.quote(separator));
+        }
+        openScanners.add(scanner);
+        return scanner;
+    }
+
+    private synchronized void closeScanner(Scanner scanner) {
+        scanner.close();
+        openScanners.remove(scanner);
+    }
+
+    /**
+     * count the parts, without keeping them
+     * 
+     * @return number of non blank parts
+     */
+    public int count() {
+        int count = 0;
+        for (Iterator<String> it = iterator(); it.hasNext(); it.next()) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * base class of both iterators, which takes care of skipping blank parts
+     */
+    private abstract class PartIterator implements Iterator<String> {
+        private String next;
+
+        /**
+         * 
+         * @return the next part, blank or not, or null if the end of the value is reached
+         */
+        protected abstract String readPart();
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String part = readPart();
+                if (part == null) {
+                    return false;
+                }
+                if (StringUtils.isNotBlank(part)) {
+                    next = part;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String part = next;
+            next = null;
+            return part;
+        }
+    }
+
+    private class LiteralIterator extends PartIterator {
+        private int position = 0;
+
+        @Override
+        protected String readPart() {
+            if (position > value.length()) {
+                return null;
+            }
+            int end = separator.isEmpty() ? -1 : indexOf(separator, position);
+            if (end < 0) {
+                String part = value.subSequence(position, value.length()).toString();
+                position = value.length() + 1;
+                return part;
+            }
+            String part = value.subSequence(position, end).toString();
+            position = end + separator.length();
+            return part;
+        }
+    }
+
+    /**
+     * find the next occurrence of the literal separator without copying the value
+     * 
+     * @param str literal separator, not empty
+     * @param from position to start the search
+     * @return position of the next occurrence, or -1 if there is none
+     */
+    private int indexOf(String str, int from) {
+        if (value instanceof String) {
+            return ((String) value).indexOf(str, from);
+        }
+        char first = str.charAt(0);
+        int max = value.length() - str.length();
+        for (int i = from; i <= max; ++i) {
+            if (value.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < str.length() && value.charAt(i + j) == str.charAt(j)) {
+                ++j;
+            }
+            if (j == str.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private class RegexIterator extends PartIterator {
+        private final Matcher matcher = pattern.matcher(value);
+        private int position = 0;
+
+        @Override
+        protected String readPart() {
+            if (position > value.length()) {
+                return null;
+            }
+            if (matcher.find()) {
+                String part = value.subSequence(position, matcher.start()).toString();
+                position = matcher.end();
+                return part;
+            }
+            String part = value.subSequence(position, value.length()).toString();
+            position = value.length() + 1;
+            return part;
+        }
+    }
+
+    private class FileIterator extends PartIterator {
+        private Scanner scanner;
+        private boolean finished = false;
+
+        @Override
+        protected String readPart() {
+            if (finished) {
+                return null;
+            }
+            try {
+                if (scanner == null) {
+                    scanner = openScanner();
+                }
+            } catch (IOException e) {
+                finished = true;
+                throw new UncheckedIOException("Failed to read the values from the file " + file, e);
+            }
+            if (scanner.hasNext()) {
+                return scanner.next();
+            }
+            finished = true;
+            // the scanner hides read errors, they must not look like the end of the file
+            IOException e = scanner.ioException();
+            closeScanner(scanner);
+            if (e != null) {
+                throw new UncheckedIOException("Failed to read the values from the file " + file, e);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * Counters and timers of a single run of the plugin. All times are measured in nanoseconds. Counters may be updated by the threads that save
+ * process properties in parallel.
+ */
+@Getter
+class RunMetrics {
+
+    private final long startTime = System.nanoTime();
+
+    // number of entries that were handled
+    private long entries;
+    // number of duplicated steps that were created
+    private long stepsCreated;
+    // number of database writes of steps and properties
+    private long databaseWrites;
+    // number of reads and writes of the METS file
+    private long metsReads;
+    private long metsWrites;
+    // size of the METS file after the last write
+    private long metsBytesWritten;
+    // number of errors that were logged
+    private long failures;
+
+    // time spent on creating the duplicates in memory
+    private long cloneTime;
+    // time spent on adding metadata to the logical DocStruct, including the first read of the METS file
+    private long metadataTime;
+    // time spent on saving and deleting steps
+    private long stepSaveTime;
+    // time spent on saving and deleting properties
+    private long propertySaveTime;
+    // time spent on reading and writing the METS file
+    private long metsTime;
+    // time spent on waiting for the write budget
+    private long throttleTime;
+
+    synchronized void addEntries(long count) {
+        entries += count;
+    }
+
+    synchronized void addStepCreated() {
+        ++stepsCreated;
+    }
+
+    synchronized void addFailure() {
+        ++failures;
+    }
+
+    synchronized void addCloneTime(long nanos) {
+        cloneTime += nanos;
+    }
+
+    synchronized void addMetadataTime(long nanos) {
+        metadataTime += nanos;
+    }
+
+    synchronized void addStepWrite(long nanos) {
+        ++databaseWrites;
+        stepSaveTime += nanos;
+    }
+
+    synchronized void addPropertyWrite(long nanos) {
+        ++databaseWrites;
+        propertySaveTime += nanos;
+    }
+
+    synchronized void addMetsRead(long nanos) {
+        ++metsReads;
+        metsTime += nanos;
+    }
+
+    synchronized void addThrottleTime(long nanos) {
+        throttleTime += nanos;
+    }
+
+    synchronized void addMetsWrite(long nanos, long bytes) {
+        ++metsWrites;
+        metsTime += nanos;
+        metsBytesWritten += bytes;
+    }
+
+    /**
+     * 
+     * @return time since this run was started in nanoseconds
+     */
+    long getElapsedTime() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * 
+     * @return a single line summarizing this run
+     */
+    String getSummary() {
+        return entries + " entries, " + stepsCreated + " new steps, " + databaseWrites + " database writes, " + metsReads + " METS reads, "
+                + metsWrites + " METS writes (" + metsBytesWritten + " bytes), " + failures + " failures in " + toMillis(getElapsedTime())
+                + " ms (cloning " + toMillis(cloneTime) + " ms, metadata " + toMillis(metadataTime) + " ms, steps " + toMillis(stepSaveTime)
+                + " ms, properties " + toMillis(propertySaveTime) + " ms, METS I/O " + toMillis(metsTime) + " ms, waiting for the write budget "
+                + toMillis(throttleTime) + " ms)";
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
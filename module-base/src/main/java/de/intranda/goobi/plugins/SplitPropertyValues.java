@@ -0,0 +1,117 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Helper to read and write the compact storage mode of the plugin, where all split parts are saved as one JSON array in a single process property
+ * instead of one process property per part. It can also be used by downstream steps to look up single parts.
+ */
+@Log4j2
+public final class SplitPropertyValues {
+
+    private static final Gson GSON = new Gson();
+    private static final Type LIST_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    private SplitPropertyValues() {
+        // static helpers only
+    }
+
+    /**
+     * serialize the input parts into a JSON array
+     * 
+     * @param values split parts
+     * @return JSON array containing all parts in their original order
+     */
+    public static String toJson(Iterable<String> values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return GSON.toJson(list, LIST_TYPE);
+    }
+
+    /**
+     * parse a JSON array that was written by toJson
+     * 
+     * @param json JSON array
+     * @return list of all parts, or an empty list if the input is blank or no valid JSON array
+     */
+    public static List<String> fromJson(String json) {
+        if (StringUtils.isBlank(json)) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> values = GSON.fromJson(json, LIST_TYPE);
+            return values == null ? Collections.emptyList() : values;
+        } catch (JsonParseException e) {
+            log.error("The value '" + json + "' is no valid JSON array.");
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * get all parts that are saved in the process property of the input name
+     * 
+     * @param process Goobi process
+     * @param propertyName name of the process property
+     * @return list of all parts, or an empty list if the property does not exist
+     */
+    public static List<String> getValues(Process process, String propertyName) {
+        String nameNoSpace = propertyName.replace(" ", "_");
+        for (GoobiProperty property : process.getEigenschaften()) {
+            if (nameNoSpace.equals(property.getNormalizedTitle())) {
+                return fromJson(property.getWert());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * get a single part that is saved in the process property of the input name
+     * 
+     * @param process Goobi process
+     * @param propertyName name of the process property
+     * @param index index of the part, starting with 1 just like the index used in the titles of the duplicated steps
+     * @return the part with the input index, or null if there is no such part
+     */
+    public static String getValue(Process process, String propertyName, int index) {
+        List<String> values = getValues(process, propertyName);
+        if (index < 1 || index > values.size()) {
+            return null;
+        }
+        return values.get(index - 1);
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import lombok.Getter;
+
+/**
+ * Snapshot of a step that shall be duplicated. All fields of the step are read once, including its properties, users and user groups, and every
+ * duplicate is created from this snapshot with only its title being different. As all fields of Step are copied by reflection, new fields of Step
+ * are copied as well without any change here.
+ */
+public class StepTemplate {
+
+    /* // =========================== fields that are NOT to be copied are: =========================== //
+     * 1. id, title
+     *     - which must be different
+     * 2. process, processId
+     *     - which is achieved by calling the setter on the process directly
+     * 3. bearbeitungsstatus, bearbeitungszeitpunkt, bearbeitungsbeginn, bearbeitungsende, bearbeitungsbenutzer, userId, messageQueue
+     *     - which do not have to be the same
+     * 4. eigenschaften, benutzer, benutzergruppen
+     *     - which are read via their getters, so that they are loaded if they are not loaded yet
+     * // ============================================================================== // */
+    private static final Set<String> EXCLUDED_FIELDS = new HashSet<>(Arrays.asList("id", "titel", "prozess", "processId", "bearbeitungsstatus",
+            "bearbeitungszeitpunkt", "bearbeitungsbeginn", "bearbeitungsende", "bearbeitungsbenutzer", "userId", "messageQueue", "eigenschaften",
+            "benutzer", "benutzergruppen"));
+
+    // all fields of Step that are copied, determined only once
+    static final List<Field> COPIED_FIELDS = findCopiedFields();
+
+    private final Process process;
+    private final Object[] values;
+
+    // relations of the step, shared by all duplicates
+    @Getter
+    private final List<?> properties;
+    @Getter
+    private final List<?> users;
+    @Getter
+    private final List<?> userGroups;
+
+    /**
+     * take a snapshot of the input step
+     * 
+     * @param step the step that shall be duplicated
+     * @param process the process the duplicates shall belong to
+     */
+    public StepTemplate(Step step, Process process) {
+        this.process = process;
+        this.values = new Object[COPIED_FIELDS.size()];
+        try {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = COPIED_FIELDS.get(i).get(step);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to read the fields of the step " + step.getTitel(), e);
+        }
+        this.properties = copy(step.getEigenschaften());
+        this.users = copy(step.getBenutzer());
+        this.userGroups = copy(step.getBenutzergruppen());
+    }
+
+    /**
+     * create a new duplicate from this snapshot, the new step is not saved yet
+     * 
+     * @param title title of the new step
+     * @return the new step
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Step newStep(String title) {
+        Step newStep = new Step();
+        try {
+            for (int i = 0; i < values.length; ++i) {
+                COPIED_FIELDS.get(i).set(newStep, copyValue(COPIED_FIELDS.get(i), values[i]));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to write the fields of the step " + title, e);
+        }
+        newStep.setProzess(process);
+        newStep.setTitel(title);
+        newStep.setEigenschaften(new ArrayList(properties));
+        newStep.setBenutzer(new ArrayList(users));
+        newStep.setBenutzergruppen(new ArrayList(userGroups));
+        return newStep;
+    }
+
+    /**
+     * mutable values must not be shared between the duplicates. Collections keep their type, so that they still match the type of the field.
+     * 
+     * @param field the field the value belongs to
+     * @param value value of the field
+     * @return a copy of collections and arrays, the value itself otherwise
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object copyValue(Field field, Object value) {
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            if (collection instanceof TreeSet) {
+                // keeps the comparator
+                return new TreeSet<>((TreeSet<?>) collection);
+            }
+            try {
+                Collection copy = collection.getClass().getDeclaredConstructor().newInstance();
+                copy.addAll(collection);
+                return copy;
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                // e.g. unmodifiable collections, which can not be changed through any of the duplicates anyway
+            }
+            if (collection instanceof List && field.getType().isAssignableFrom(ArrayList.class)) {
+                return new ArrayList<>(collection);
+            }
+            if (collection instanceof Set && field.getType().isAssignableFrom(LinkedHashSet.class)) {
+                return new LinkedHashSet<>(collection);
+            }
+            return value;
+        }
+        if (value instanceof Object[]) {
+            return ((Object[]) value).clone();
+        }
+        return value;
+    }
+
+    private static List<?> copy(List<?> list) {
+        return list == null ? new ArrayList<>() : new ArrayList<>(list);
+    }
+
+    private static List<Field> findCopiedFields() {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> clazz = Step.class; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic() || EXCLUDED_FIELDS.contains(field.getName())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the database writes of the plugin to a number of rows per second and a number of writes that may run at the same time. Writes that
+ * exceed the budget wait instead of failing. The budget is shared by all runs with the same limits inside of the JVM, so that many processes
+ * that are handled in parallel do not exceed it together.
+ */
+class WriteBudget {
+
+    private static final Map<String, WriteBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    // rows that may be written per second, 0 if unlimited
+    private final int rowsPerSecond;
+    // permits for writes that run at the same time, null if unlimited
+    private final Semaphore inFlight;
+
+    // rows that may be written right now, negative if writes are already waiting
+    private double availableRows;
+    private long lastRefill = System.nanoTime();
+
+    private WriteBudget(int rowsPerSecond, int maxInFlight) {
+        this.rowsPerSecond = Math.max(0, rowsPerSecond);
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.availableRows = this.rowsPerSecond;
+    }
+
+    /**
+     * get the budget for the input limits
+     * 
+     * @param rowsPerSecond rows that may be written per second, 0 if unlimited
+     * @param maxInFlight writes that may run at the same time, 0 if unlimited
+     * @return the shared budget, or null if both limits are unlimited
+     */
+    static WriteBudget get(int rowsPerSecond, int maxInFlight) {
+        if (rowsPerSecond <= 0 && maxInFlight <= 0) {
+            return null;
+        }
+        return BUDGETS.computeIfAbsent(rowsPerSecond + "_" + maxInFlight, k -> new WriteBudget(rowsPerSecond, maxInFlight));
+    }
+
+    /**
+     * wait until a row may be written. If a permit for a running write was taken, release must be called after the write.
+     * 
+     * @return true if a permit was taken, false if the thread was interrupted while waiting for it
+     */
+    boolean acquire() {
+        if (inFlight != null) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                // do not fail the write, only stop waiting, but there is no permit to release
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        long waitNanos = reserveRow();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                // the permit is already taken and must still be released
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * finish a write for which acquire took a permit
+     */
+    void release() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * take one row from the bucket, which may become negative, so that waiting writes are served in the order they arrived
+     * 
+     * @return time to wait until the reserved row is available in nanoseconds
+     */
+    private synchronized long reserveRow() {
+        if (rowsPerSecond == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        // at most one second of unused budget is kept
+        availableRows = Math.min(rowsPerSecond, availableRows + (now - lastRefill) * rowsPerSecond / 1e9);
+        lastRefill = now;
+        availableRows -= 1;
+        return availableRows >= 0 ? 0 : (long) (-availableRows * 1e9 / rowsPerSecond);
+    }
+}
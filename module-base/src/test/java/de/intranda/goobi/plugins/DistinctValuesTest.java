@@ -0,0 +1,52 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DistinctValuesTest {
+
+    @Test
+    public void testExact() {
+        DistinctValues values = new DistinctValues(Arrays.asList("a", "b", "a", "A", "b"), true, false, null);
+        assertEquals(Arrays.asList("a", "b", "A"), toList(values));
+        assertEquals(2, values.getDroppedRepeated());
+        assertEquals(0, values.getDroppedExisting());
+    }
+
+    @Test
+    public void testNormalized() {
+        DistinctValues values = new DistinctValues(Arrays.asList("Foo  Bar", " foo bar ", "foobar"), true, true, null);
+        assertEquals(Arrays.asList("Foo  Bar", "foobar"), toList(values));
+        assertEquals(1, values.getDroppedRepeated());
+    }
+
+    @Test
+    public void testExisting() {
+        DistinctValues values = new DistinctValues(Arrays.asList("a", "b", "c", "c"), false, false, Arrays.asList("b"));
+        assertEquals(Arrays.asList("a", "c", "c"), toList(values));
+        assertEquals(0, values.getDroppedRepeated());
+        assertEquals(1, values.getDroppedExisting());
+    }
+
+    @Test
+    public void testManyValues() {
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            parts.add("value" + (i % 2500));
+        }
+        DistinctValues values = new DistinctValues(parts, true, false, null);
+        assertEquals(2500, toList(values).size());
+        assertEquals(7500, values.getDroppedRepeated());
+    }
+
+    private List<String> toList(Iterable<String> parts) {
+        List<String> list = new ArrayList<>();
+        parts.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,160 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import ugh.dl.Prefs;
+
+public class DuplicationRollbackTest {
+
+    private Process process;
+    private Processproperty source;
+    private Step pluginStep;
+    private Step template;
+    private DuplicateTasksConfiguration config;
+
+    @Before
+    public void setUp() throws Exception {
+        process = new Process();
+        // no journal entries are written for the id 0
+        process.setId(0);
+        process.setTitel("rollback");
+        source = new Processproperty();
+        source.setTitel("AssetUri");
+        source.setWert("a,b,c");
+        source.setProzess(process);
+        process.setEigenschaften(new ArrayList<>(Arrays.asList(source)));
+
+        pluginStep = createStep(1001, "Split assets", 1, StepStatus.INWORK);
+        template = createStep(1002, "Template", 2, StepStatus.LOCKED);
+        process.setSchritte(new ArrayList<>(Arrays.asList(pluginStep, template)));
+
+        config = createConfig("");
+    }
+
+    @Test
+    public void testFailedDeactivationRemovesDuplicates() {
+        InMemoryDuplicationStore store = new InMemoryDuplicationStore(new Prefs(), null) {
+            @Override
+            public void saveStep(Step step) {
+                if (step == template && step.getBearbeitungsstatusEnum() == StepStatus.DEACTIVATED) {
+                    throw new IllegalStateException("the template can not be saved");
+                }
+                super.saveStep(step);
+            }
+        };
+
+        assertEquals(PluginReturnValue.ERROR, run(store));
+
+        assertTrue(store.getSteps().isEmpty());
+        assertTrue(store.getProperties().isEmpty());
+        assertEquals(2, process.getSchritte().size());
+        assertEquals(StepStatus.LOCKED, template.getBearbeitungsstatusEnum());
+    }
+
+    @Test
+    public void testFailedPropertyRemovesEverything() {
+        InMemoryDuplicationStore store = new InMemoryDuplicationStore(new Prefs(), null) {
+            @Override
+            public void saveProcessProperty(Processproperty property) {
+                if ("Asset [2]".equals(property.getTitel())) {
+                    throw new IllegalStateException("the property can not be saved");
+                }
+                super.saveProcessProperty(property);
+            }
+        };
+
+        assertEquals(PluginReturnValue.ERROR, run(store));
+
+        assertTrue(store.getSteps().isEmpty());
+        // the property that was saved before the failure is deleted again
+        assertTrue(store.getProperties().isEmpty());
+        assertEquals(2, process.getSchritte().size());
+        assertEquals(StepStatus.LOCKED, template.getBearbeitungsstatusEnum());
+    }
+
+    @Test
+    public void testFailedEntryIsHandledByNextRun() throws Exception {
+        config = createConfig("<continueOnError threads=\"2\">true</continueOnError>");
+        InMemoryDuplicationStore failingStore = new InMemoryDuplicationStore(new Prefs(), null) {
+            @Override
+            public void saveProcessProperty(Processproperty property) {
+                if ("Asset [2]".equals(property.getTitel())) {
+                    throw new IllegalStateException("the property can not be saved");
+                }
+                super.saveProcessProperty(property);
+            }
+        };
+
+        assertEquals(PluginReturnValue.ERROR, run(failingStore));
+
+        // the other entries are kept and only the failed one is remembered
+        assertEquals(3, failingStore.getSteps().size());
+        assertEquals(StepStatus.DEACTIVATED, template.getBearbeitungsstatusEnum());
+        assertEquals(Collections.singleton(2), DuplicationState.load(process, "Template").getFailedEntries());
+
+        // the next run only adds the property of the failed entry
+        InMemoryDuplicationStore store = new InMemoryDuplicationStore(new Prefs(), null);
+        assertEquals(PluginReturnValue.FINISH, run(store));
+
+        assertTrue(store.getSteps().isEmpty());
+        assertEquals(1, countProperties(store, "Asset [2]"));
+        assertEquals(0, countProperties(store, "Asset [1]") + countProperties(store, "Asset [3]"));
+        assertFalse(DuplicationState.load(process, "Template").hasFailedEntries());
+    }
+
+    private int countProperties(InMemoryDuplicationStore store, String name) {
+        int count = 0;
+        for (GoobiProperty property : store.getProperties()) {
+            if (name.equals(property.getTitel())) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private DuplicateTasksConfiguration createConfig(String options) throws Exception {
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config><property name=\"AssetUri\" separator=\",\" target=\"property:Asset\" useIndex=\"true\" />"
+                + "<stepToDuplicate enabled=\"true\">Template</stepToDuplicate>" + options + "</config>"));
+        return new DuplicateTasksConfiguration(xml);
+    }
+
+    private PluginReturnValue run(InMemoryDuplicationStore store) {
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        plugin.setStore(store);
+        plugin.initialize(pluginStep, "", new Prefs(), config);
+        return plugin.run();
+    }
+
+    private Step createStep(int id, String title, int order, StepStatus status) {
+        Step step = new Step();
+        step.setId(id);
+        step.setTitel(title);
+        step.setReihenfolge(order);
+        step.setProzess(process);
+        step.setBearbeitungsstatusEnum(status);
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+        return step;
+    }
+}
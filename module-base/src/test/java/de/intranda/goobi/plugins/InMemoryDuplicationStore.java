@@ -0,0 +1,119 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+
+import lombok.Getter;
+import ugh.dl.Fileformat;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+import ugh.exceptions.ReadException;
+import ugh.exceptions.WriteException;
+import ugh.fileformats.mets.MetsMods;
+
+/**
+ * DuplicationStore without database for the tests and the benchmarks, steps and properties are only kept in memory. The METS file is read from and
+ * written to a local file, so that the costs of parsing and serializing it are still measured.
+ */
+class InMemoryDuplicationStore implements DuplicationStore {
+
+    private final Prefs prefs;
+    private final Path metsFile;
+
+    @Getter
+    private final List<Step> steps = new ArrayList<>();
+    // properties are saved in parallel if continueOnError is configured
+    @Getter
+    private final List<GoobiProperty> properties = Collections.synchronizedList(new ArrayList<>());
+    private int nextId = 1;
+
+    InMemoryDuplicationStore(Prefs prefs, Path metsFile) {
+        this.prefs = prefs;
+        this.metsFile = metsFile;
+    }
+
+    @Override
+    public Step reloadStep(Step step) {
+        // the objects in memory are always up to date
+        return step;
+    }
+
+    @Override
+    public void saveStep(Step step) {
+        if (step.getId() == null) {
+            step.setId(nextId++);
+            steps.add(step);
+        }
+    }
+
+    @Override
+    public void deleteStep(Step step) {
+        steps.remove(step);
+    }
+
+    @Override
+    public void saveProcessProperty(Processproperty property) {
+        properties.add(property);
+    }
+
+    @Override
+    public void saveProperty(GoobiProperty property) {
+        if (!properties.contains(property)) {
+            properties.add(property);
+        }
+    }
+
+    @Override
+    public void deleteProperty(GoobiProperty property) {
+        properties.remove(property);
+    }
+
+    @Override
+    public Fileformat readMetadataFile(Process process) throws ReadException, PreferencesException {
+        Fileformat fileformat = new MetsMods(prefs);
+        fileformat.read(metsFile.toString());
+        return fileformat;
+    }
+
+    @Override
+    public void writeMetadataFile(Process process, Fileformat fileformat) throws WriteException, PreferencesException, IOException {
+        fileformat.write(metsFile.toString());
+    }
+
+    @Override
+    public long getMetadataFileSize(Process process) {
+        try {
+            return Files.size(metsFile);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import ugh.dl.Prefs;
+
+public class IncrementalDuplicationTest {
+
+    private Process process;
+    private Processproperty source;
+    private Step pluginStep;
+    private Step template;
+    private InMemoryDuplicationStore store;
+    private DuplicateTasksConfiguration config;
+
+    @Before
+    public void setUp() throws Exception {
+        process = new Process();
+        // no journal entries are written for the id 0
+        process.setId(0);
+        process.setTitel("incremental");
+        source = new Processproperty();
+        source.setTitel("AssetUri");
+        source.setProzess(process);
+        process.setEigenschaften(new ArrayList<>(Arrays.asList(source)));
+
+        pluginStep = createStep(1001, "Split assets", 1, StepStatus.INWORK);
+        template = createStep(1002, "Template", 2, StepStatus.LOCKED);
+        process.setSchritte(new ArrayList<>(Arrays.asList(pluginStep, template)));
+
+        store = new InMemoryDuplicationStore(new Prefs(), null);
+
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config><property name=\"AssetUri\" separator=\",\" target=\"property:Asset\" useIndex=\"true\" />"
+                + "<stepToDuplicate enabled=\"true\" incremental=\"true\">Template</stepToDuplicate></config>"));
+        config = new DuplicateTasksConfiguration(xml);
+    }
+
+    @Test
+    public void testFirstRun() {
+        run("a,b,c");
+
+        assertEquals(StepStatus.DEACTIVATED, template.getBearbeitungsstatusEnum());
+        assertEquals(3, store.getSteps().size());
+        assertEquals("a", getValue("Asset [1]"));
+        assertEquals("b", getValue("Asset [2]"));
+        assertEquals("c", getValue("Asset [3]"));
+    }
+
+    @Test
+    public void testEntriesAdded() {
+        run("a,b");
+        run("a,b,c,d");
+
+        assertEquals(4, store.getSteps().size());
+        assertEquals(StepStatus.LOCKED, getStep("Template [4]").getBearbeitungsstatusEnum());
+        assertEquals(4, store.getProperties().size());
+        assertEquals("a", getValue("Asset [1]"));
+        assertEquals("c", getValue("Asset [3]"));
+        assertEquals("d", getValue("Asset [4]"));
+    }
+
+    @Test
+    public void testEntriesRemoved() {
+        run("a,b,c");
+        run("a");
+
+        assertEquals(3, store.getSteps().size());
+        assertEquals(StepStatus.LOCKED, getStep("Template [1]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.DEACTIVATED, getStep("Template [2]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.DEACTIVATED, getStep("Template [3]").getBearbeitungsstatusEnum());
+        assertEquals("a", getValue("Asset [1]"));
+        assertNull(getValue("Asset [2]"));
+        assertNull(getValue("Asset [3]"));
+
+        // the duplicate is used again as soon as its entry is back
+        run("a,b");
+        assertEquals(3, store.getSteps().size());
+        assertEquals(StepStatus.LOCKED, getStep("Template [2]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.DEACTIVATED, getStep("Template [3]").getBearbeitungsstatusEnum());
+        assertEquals("b", getValue("Asset [2]"));
+    }
+
+    @Test
+    public void testEntriesChanged() {
+        run("a,b,c");
+        getStep("Template [1]").setBearbeitungsstatusEnum(StepStatus.DONE);
+        getStep("Template [2]").setBearbeitungsstatusEnum(StepStatus.DONE);
+        run("a,x,c");
+
+        assertEquals(3, store.getSteps().size());
+        assertEquals(3, store.getProperties().size());
+        assertEquals("x", getValue("Asset [2]"));
+        // only the duplicate whose entry changed has to be done again
+        assertEquals(StepStatus.DONE, getStep("Template [1]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.OPEN, getStep("Template [2]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.LOCKED, getStep("Template [3]").getBearbeitungsstatusEnum());
+    }
+
+    @Test
+    public void testRerunWithoutIncrementalModeChangesNothing() throws Exception {
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config><property name=\"AssetUri\" separator=\",\" target=\"property:Asset\" useIndex=\"true\" />"
+                + "<stepToDuplicate enabled=\"true\">Template</stepToDuplicate></config>"));
+        config = new DuplicateTasksConfiguration(xml);
+
+        run("a,b,c");
+        // e.g. the workflow runs the step again while the bulk runner has already handled it
+        run("a,b,c,d");
+
+        assertEquals(3, store.getSteps().size());
+        assertEquals(3, store.getProperties().size());
+        assertNull(getStep("Template [4]"));
+    }
+
+    /**
+     * run the plugin with the input value of the source property, the properties that are saved by earlier runs are part of the process again, as
+     * if it was loaded from the database
+     *
+     * @param value value of the source property
+     */
+    private void run(String value) {
+        source.setWert(value);
+        List<GoobiProperty> properties = new ArrayList<>();
+        properties.add(source);
+        properties.addAll(store.getProperties());
+        process.setEigenschaften(properties);
+
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        plugin.setStore(store);
+        plugin.initialize(pluginStep, "", new Prefs(), config);
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+    }
+
+    private String getValue(String name) {
+        for (GoobiProperty property : store.getProperties()) {
+            if (name.equals(property.getTitel())) {
+                return property.getWert();
+            }
+        }
+        return null;
+    }
+
+    private Step getStep(String title) {
+        for (Step step : process.getSchritte()) {
+            if (title.equals(step.getTitel())) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    private Step createStep(int id, String title, int order, StepStatus status) {
+        Step step = new Step();
+        step.setId(id);
+        step.setTitel(title);
+        step.setReihenfolge(order);
+        step.setProzess(process);
+        step.setBearbeitungsstatusEnum(status);
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+        return step;
+    }
+}
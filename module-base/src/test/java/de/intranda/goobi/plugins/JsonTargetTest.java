@@ -0,0 +1,100 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import ugh.dl.Prefs;
+
+public class JsonTargetTest {
+
+    private Process process;
+    private Processproperty source;
+    private Step pluginStep;
+    private InMemoryDuplicationStore store;
+
+    @Before
+    public void setUp() {
+        process = new Process();
+        // no journal entries are written for the id 0
+        process.setId(0);
+        process.setTitel("json");
+        source = new Processproperty();
+        source.setTitel("AssetUri");
+        source.setProzess(process);
+        process.setEigenschaften(new ArrayList<>(Arrays.asList(source)));
+
+        pluginStep = new Step();
+        pluginStep.setId(1001);
+        pluginStep.setTitel("Split assets");
+        pluginStep.setReihenfolge(1);
+        pluginStep.setProzess(process);
+        pluginStep.setBearbeitungsstatusEnum(StepStatus.INWORK);
+        process.setSchritte(new ArrayList<>(Arrays.asList(pluginStep)));
+
+        store = new InMemoryDuplicationStore(new Prefs(), null);
+    }
+
+    @Test
+    public void testSkipExistingAppendsToTheProperty() throws Exception {
+        DuplicateTasksConfiguration config = createConfig(" skipExisting=\"true\"");
+        run("a,b", config);
+        run("a,b,c", config);
+        run("a,b,c", config);
+
+        assertEquals(1, store.getProperties().size());
+        assertEquals(Arrays.asList("a", "b", "c"), SplitPropertyValues.getValues(process, "Assets"));
+    }
+
+    @Test
+    public void testRerunReplacesTheProperty() throws Exception {
+        DuplicateTasksConfiguration config = createConfig("");
+        run("a,b", config);
+        run("c", config);
+
+        assertEquals(1, store.getProperties().size());
+        assertEquals(Arrays.asList("c"), SplitPropertyValues.getValues(process, "Assets"));
+    }
+
+    /**
+     * run the plugin with the input value of the source property, the properties that are saved by earlier runs are part of the process again, as
+     * if it was loaded from the database
+     *
+     * @param value value of the source property
+     * @param config configuration of the run
+     */
+    private void run(String value, DuplicateTasksConfiguration config) {
+        source.setWert(value);
+        List<GoobiProperty> properties = new ArrayList<>();
+        properties.add(source);
+        properties.addAll(store.getProperties());
+        process.setEigenschaften(properties);
+
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        plugin.setStore(store);
+        plugin.initialize(pluginStep, "", new Prefs(), config);
+        assertEquals(PluginReturnValue.FINISH, plugin.run());
+    }
+
+    private DuplicateTasksConfiguration createConfig(String options) throws Exception {
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config><property name=\"AssetUri\" separator=\",\" target=\"json:Assets\"" + options + " />"
+                + "<stepToDuplicate enabled=\"false\" /></config>"));
+        return new DuplicateTasksConfiguration(xml);
+    }
+}
@@ -0,0 +1,39 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.junit.Test;
+
+public class ProcessIndexTest {
+
+    @Test
+    public void testDuplicatesAreSortedByIndex() {
+        Process process = new Process();
+        process.setEigenschaften(new ArrayList<>());
+        // the order in which the database might return the steps
+        process.setSchritte(new ArrayList<>(Arrays.asList(createStep("Template [10]", 2), createStep("Join", 3), createStep("Template [2]", 2),
+                createStep("Other", 2), createStep("Template", 2), createStep("Split assets", 1), createStep("Template [1]", 2))));
+
+        ProcessIndex index = new ProcessIndex(process);
+
+        List<String> titles = new ArrayList<>();
+        for (Step step : process.getSchritte()) {
+            titles.add(step.getTitel());
+        }
+        assertEquals(Arrays.asList("Split assets", "Other", "Template", "Template [1]", "Template [2]", "Template [10]", "Join"), titles);
+        assertEquals("Join", index.getNextStep(index.getStepByTitle("Template")).getTitel());
+    }
+
+    private Step createStep(String title, int order) {
+        Step step = new Step();
+        step.setTitel(title);
+        step.setReihenfolge(order);
+        return step;
+    }
+}
@@ -0,0 +1,80 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertyValueSplitterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLiteralSeparator() {
+        assertEquals(Arrays.asList("a", "b", "c"), toList(new PropertyValueSplitter("a,b,,c, ,", ",", false)));
+        // characters that have a special meaning in regular expressions are used literally
+        assertEquals(Arrays.asList("a", "b"), toList(new PropertyValueSplitter("a|b", "|", false)));
+    }
+
+    @Test
+    public void testEscapedSeparator() {
+        assertEquals(Arrays.asList("a", "b", "c"), toList(new PropertyValueSplitter("a\nb\n\nc", "\\n", false)));
+        assertEquals(Arrays.asList("a", "b"), toList(new PropertyValueSplitter("a\tb", "\\t", false)));
+    }
+
+    @Test
+    public void testRegexSeparator() {
+        assertEquals(Arrays.asList("a", "b", "c"), toList(new PropertyValueSplitter("a1b22c", "[0-9]+", true)));
+    }
+
+    @Test
+    public void testCharSequence() {
+        PropertyValueSplitter splitter = new PropertyValueSplitter(CharBuffer.wrap("x;;y;;z"), ";;", false);
+        assertEquals(Arrays.asList("x", "y", "z"), toList(splitter));
+        assertEquals(3, splitter.count());
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        Path file = folder.newFile("parts.txt").toPath();
+        Files.write(file, "ä;;b;;;;c\n".getBytes(StandardCharsets.UTF_8));
+
+        try (PropertyValueSplitter splitter = new PropertyValueSplitter(file, ";;", false)) {
+            assertEquals(Arrays.asList("ä", "b", "c\n"), toList(splitter));
+            // every iteration reads the file again
+            assertEquals(3, splitter.count());
+            // an iteration that is stopped early is closed by the splitter
+            splitter.iterator().next();
+        }
+        assertEquals(Arrays.asList("ä;;b", "c"), toList(new PropertyValueSplitter(file, ";;;;|\\s+", true)));
+    }
+
+    @Test
+    public void testEmptyValue() {
+        assertEquals(0, new PropertyValueSplitter("", ",", false).count());
+        assertEquals(0, new PropertyValueSplitter(null, ",", false).count());
+    }
+
+    @Test
+    public void testChunks() {
+        PropertyValueSplitter splitter = new PropertyValueSplitter("a,b,c,d,e", ",", false);
+        assertEquals(Arrays.asList("a,b", "c,d", "e"), toList(new ChunkedValues(splitter, 2, splitter.getJoinSeparator())));
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), toList(new ChunkedValues(splitter, 1, splitter.getJoinSeparator())));
+    }
+
+    private List<String> toList(Iterable<String> parts) {
+        List<String> list = new ArrayList<>();
+        parts.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,171 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+import org.goobi.beans.User;
+import org.goobi.beans.Usergroup;
+import org.junit.Test;
+
+public class StepTemplateTest {
+
+    @Test
+    public void testNewStep() {
+        Process process = new Process();
+        Step step = new Step();
+        step.setId(5);
+        step.setTitel("Template");
+        step.setProzess(process);
+        step.setReihenfolge(3);
+        step.setTypAutomatisch(true);
+        step.setScriptname1("script");
+        step.setPossibleHttpMethods(new String[] { "GET", "POST" });
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+
+        StepTemplate template = new StepTemplate(step, process);
+        Step first = template.newStep("Template [1]");
+        Step second = template.newStep("Template [2]");
+
+        assertNull(first.getId());
+        assertEquals("Template [1]", first.getTitel());
+        assertEquals("Template [2]", second.getTitel());
+        assertSame(process, first.getProzess());
+        assertEquals(Integer.valueOf(3), first.getReihenfolge());
+        assertTrue(first.isTypAutomatisch());
+        assertEquals("script", first.getScriptname1());
+        assertArrayEquals(step.getPossibleHttpMethods(), first.getPossibleHttpMethods());
+        // mutable values are not shared between the duplicates
+        assertNotSame(first.getPossibleHttpMethods(), second.getPossibleHttpMethods());
+        assertNotSame(first.getBenutzer(), second.getBenutzer());
+    }
+
+    @Test
+    public void testAssignmentIsKept() {
+        User member = new User();
+        member.setId(1);
+        User other = new User();
+        other.setId(2);
+        Usergroup group = new Usergroup();
+        group.setBenutzer(new ArrayList<>(Arrays.asList(member)));
+
+        Process process = new Process();
+        Step step = new Step();
+        step.setTitel("Template");
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>(Arrays.asList(member, other)));
+        step.setBenutzergruppen(new ArrayList<>(Arrays.asList(group)));
+
+        StepTemplate template = new StepTemplate(step, process);
+        Step first = template.newStep("Template [1]");
+        Step second = template.newStep("Template [2]");
+
+        // users that are members of an assigned group are assigned directly as well
+        assertEquals(Arrays.asList(member, other), first.getBenutzer());
+        assertEquals(Arrays.asList(group), first.getBenutzergruppen());
+        assertNotSame(first.getBenutzer(), second.getBenutzer());
+        assertNotSame(first.getBenutzergruppen(), second.getBenutzergruppen());
+    }
+
+    @Test
+    public void testAllFieldsAreCopied() throws Exception {
+        Process process = new Process();
+        Step step = new Step();
+        step.setTitel("Template");
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+        assertFalse(StepTemplate.COPIED_FIELDS.isEmpty());
+        for (Field field : StepTemplate.COPIED_FIELDS) {
+            Object value = createValue(field.getType());
+            if (value != null) {
+                field.set(step, value);
+            }
+        }
+
+        StepTemplate template = new StepTemplate(step, process);
+        Step first = template.newStep("Template [1]");
+        Step second = template.newStep("Template [2]");
+
+        for (Field field : StepTemplate.COPIED_FIELDS) {
+            Object expected = field.get(step);
+            Object copied = field.get(first);
+            String message = "field " + field.getName();
+            if (expected instanceof Object[]) {
+                assertArrayEquals(message, (Object[]) expected, (Object[]) copied);
+                assertNotSame(message, copied, field.get(second));
+            } else if (expected instanceof Collection) {
+                assertEquals(message, expected, copied);
+                // the type of the collection is kept, otherwise it might not match the type of the field
+                assertSame(message, expected.getClass(), copied.getClass());
+                assertNotSame(message, copied, field.get(second));
+            } else {
+                assertEquals(message, expected, copied);
+            }
+        }
+    }
+
+    /**
+     * create a value that differs from the default value of a new Step
+     * 
+     * @param type type of a field
+     * @return a value of this type, or null if none can be created
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object createValue(Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.TRUE;
+        } else if (type == int.class || type == Integer.class) {
+            return 42;
+        } else if (type == long.class || type == Long.class) {
+            return 42L;
+        } else if (type == double.class || type == Double.class) {
+            return 4.2;
+        } else if (type == String.class) {
+            return "value";
+        } else if (type == Date.class) {
+            return new Date(1000);
+        } else if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            return constants[constants.length - 1];
+        } else if (type.isArray()) {
+            Object array = Array.newInstance(type.getComponentType(), 1);
+            if (type.getComponentType() == String.class) {
+                Array.set(array, 0, "value");
+            }
+            return array;
+        } else if (type.isAssignableFrom(TreeSet.class) && !type.isAssignableFrom(List.class)) {
+            // a sorted set, which must not be turned into a list
+            Set set = new TreeSet<>();
+            set.add("value");
+            return set;
+        } else if (type.isAssignableFrom(ArrayList.class)) {
+            List list = new ArrayList<>();
+            list.add("value");
+            return list;
+        }
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import ugh.dl.Prefs;
+
+public class WindowedDuplicationTest {
+
+    private Process process;
+    private Processproperty source;
+    private Step pluginStep;
+    private Step template;
+    private Step join;
+    private InMemoryDuplicationStore store;
+    private DuplicateTasksConfiguration config;
+
+    @Before
+    public void setUp() throws Exception {
+        process = new Process();
+        // no journal entries are written for the id 0
+        process.setId(0);
+        process.setTitel("windowed");
+        source = new Processproperty();
+        source.setTitel("AssetUri");
+        source.setProzess(process);
+        process.setEigenschaften(new ArrayList<>(Arrays.asList(source)));
+
+        pluginStep = createStep(1001, "Split assets", 1, StepStatus.INWORK);
+        template = createStep(1002, "Template", 2, StepStatus.LOCKED);
+        join = createStep(1003, "Join", 3, StepStatus.LOCKED);
+        process.setSchritte(new ArrayList<>(Arrays.asList(pluginStep, template, join)));
+
+        store = new InMemoryDuplicationStore(new Prefs(), null);
+
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config><property name=\"AssetUri\" separator=\",\" target=\"property:Asset\" useIndex=\"true\" />"
+                + "<stepToDuplicate enabled=\"true\" window=\"2\" joinStep=\"Join\">Template</stepToDuplicate></config>"));
+        config = new DuplicateTasksConfiguration(xml);
+    }
+
+    @Test
+    public void testFirstWindow() {
+        assertEquals(PluginReturnValue.FINISH, run("a,b,c,d"));
+
+        assertEquals(2, store.getSteps().size());
+        assertEquals(StepStatus.LOCKED, getStep("Template [1]").getBearbeitungsstatusEnum());
+        assertEquals(StepStatus.LOCKED, getStep("Template [2]").getBearbeitungsstatusEnum());
+        DuplicationState state = DuplicationState.load(process, "Template");
+        assertEquals(4, state.getTotal());
+        assertEquals(2, state.getCreated());
+        assertNotNull(state.getPartsHash());
+    }
+
+    @Test
+    public void testRefillIsOpenedLikeItsSiblings() {
+        run("a,b,c,d");
+        // the workflow opens the first duplicates as soon as the plugin step is closed
+        getStep("Template [1]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+        getStep("Template [2]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+
+        assertTrue(close(getStep("Template [1]")));
+
+        assertEquals(3, store.getSteps().size());
+        Step refill = getStep("Template [3]");
+        assertEquals(StepStatus.OPEN, refill.getBearbeitungsstatusEnum());
+        assertNotNull(refill.getBearbeitungszeitpunkt());
+        assertEquals("c", getValue("Asset [3]"));
+        DuplicationState state = DuplicationState.load(process, "Template");
+        assertEquals(3, state.getCreated());
+        assertEquals(2, state.getOpenDuplicateIds().size());
+    }
+
+    @Test
+    public void testUncommittedCloseIsNotCounted() {
+        run("a,b,c,d");
+        getStep("Template [1]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+        getStep("Template [2]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+
+        // the close was rejected, so the duplicate is still open
+        assertTrue(createPlugin().handleClosedDuplicate(getStep("Template [1]")));
+
+        assertEquals(2, store.getSteps().size());
+        DuplicationState state = DuplicationState.load(process, "Template");
+        assertEquals(2, state.getCreated());
+        assertEquals(2, state.getOpenDuplicateIds().size());
+    }
+
+    @Test
+    public void testChangedValueStopsRefill() {
+        run("a,b,c,d");
+        getStep("Template [1]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+        getStep("Template [2]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+        source.setWert("x,a,b,c,d");
+
+        assertFalse(close(getStep("Template [1]")));
+
+        assertEquals(2, store.getSteps().size());
+        assertNull(getStep("Template [3]"));
+        assertNull(getValue("Asset [3]"));
+        // the closed duplicate is remembered nevertheless
+        DuplicationState state = DuplicationState.load(process, "Template");
+        assertEquals(2, state.getCreated());
+        assertEquals(1, state.getOpenDuplicateIds().size());
+    }
+
+    @Test
+    public void testJoinStepIsOpenedAfterLastDuplicate() {
+        run("a,b,c");
+        getStep("Template [1]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+        getStep("Template [2]").setBearbeitungsstatusEnum(StepStatus.OPEN);
+
+        assertTrue(close(getStep("Template [1]")));
+        assertTrue(close(getStep("Template [2]")));
+        assertEquals(StepStatus.LOCKED, join.getBearbeitungsstatusEnum());
+        assertTrue(close(getStep("Template [3]")));
+
+        assertEquals(StepStatus.OPEN, join.getBearbeitungsstatusEnum());
+        assertTrue(DuplicationState.load(process, "Template").isJoined());
+    }
+
+    @Test
+    public void testAutomaticTemplateIsRejected() {
+        template.setTypAutomatisch(true);
+
+        assertEquals(PluginReturnValue.ERROR, run("a,b,c,d"));
+
+        assertTrue(store.getSteps().isEmpty());
+        assertEquals(StepStatus.LOCKED, template.getBearbeitungsstatusEnum());
+        assertNull(DuplicationState.load(process, "Template"));
+    }
+
+    private PluginReturnValue run(String value) {
+        source.setWert(value);
+        return createPlugin().run();
+    }
+
+    /**
+     * close the input duplicate the way the validation plugin does it
+     *
+     * @param duplicate duplicated step that is closed by a user
+     * @return result of the plugin
+     */
+    private boolean close(Step duplicate) {
+        duplicate.setBearbeitungsstatusEnum(StepStatus.DONE);
+        return createPlugin().handleClosedDuplicate(duplicate);
+    }
+
+    /**
+     * create a plugin for the plugin step, the properties that are saved by earlier calls are part of the process again, as if it was loaded from
+     * the database
+     *
+     * @return initialized plugin
+     */
+    private DuplicateTasksStepPlugin createPlugin() {
+        List<GoobiProperty> properties = new ArrayList<>();
+        properties.add(source);
+        properties.addAll(store.getProperties());
+        process.setEigenschaften(properties);
+
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        plugin.setStore(store);
+        plugin.initialize(pluginStep, "", new Prefs(), config);
+        return plugin;
+    }
+
+    private String getValue(String name) {
+        for (GoobiProperty property : store.getProperties()) {
+            if (name.equals(property.getTitel())) {
+                return property.getWert();
+            }
+        }
+        return null;
+    }
+
+    private Step getStep(String title) {
+        for (Step step : process.getSchritte()) {
+            if (title.equals(step.getTitel())) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    private Step createStep(int id, String title, int order, StepStatus status) {
+        Step step = new Step();
+        step.setId(id);
+        step.setTitel(title);
+        step.setReihenfolge(order);
+        step.setProzess(process);
+        step.setBearbeitungsstatusEnum(status);
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+        return step;
+    }
+}
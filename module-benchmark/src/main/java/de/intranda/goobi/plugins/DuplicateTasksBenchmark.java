@@ -0,0 +1,229 @@
+/**
+ * This file is part of a plugin for Goobi - a Workflow tool for the support of mass digitization.
+ *
+ * Visit the websites for more information.
+ *          - https://goobi.io
+ *          - https://www.intranda.com
+ *          - https://github.com/intranda/goobi
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program; if not, write to the Free Software Foundation, Inc., 59
+ * Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.goobi.beans.GoobiProperty;
+import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
+import org.goobi.beans.Step;
+import org.goobi.production.enums.PluginReturnValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import ugh.dl.Prefs;
+
+/**
+ * Benchmarks of the separator splitting, the step duplication, the METS changes and the whole run of the plugin. The database is replaced by an
+ * InMemoryDuplicationStore, the METS file and the ruleset are taken from the test resources of module-base.
+ * 
+ * The location of these test resources can be changed with the system property benchmark.resources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DuplicateTasksBenchmark {
+
+    private static final String PROPERTY_NAME = "AssetUri";
+    private static final String TEMPLATE_TITLE = "Metadata enrichment";
+
+    // number of parts of the property value
+    @Param({ "10", "100", "1000", "10000" })
+    private int parts;
+
+    private String propertyValue;
+    private Prefs prefs;
+    private DuplicateTasksConfiguration propertyConfig;
+    private DuplicateTasksConfiguration metadataConfig;
+    private Step template;
+    private DuplicateTasksStepPlugin clonePlugin;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("https://example.org/assets/").append(i).append(".tif");
+        }
+        propertyValue = sb.toString();
+
+        Path resources = getResourcesFolder();
+        prefs = new Prefs();
+        prefs.loadPrefs(resources.resolve("ruleset.xml").toString());
+
+        propertyConfig = createConfiguration("<property name=\"" + PROPERTY_NAME + "\" separator=\",\" target=\"property:Asset\" useIndex=\"true\" />"
+                + "<stepToDuplicate enabled=\"true\">" + TEMPLATE_TITLE + "</stepToDuplicate>");
+        metadataConfig = createConfiguration("<property name=\"" + PROPERTY_NAME + "\" separator=\",\" target=\"metadata:Note\" useIndex=\"false\" />"
+                + "<stepToDuplicate enabled=\"false\" />");
+
+        Process process = createProcess();
+        template = process.getSchritte().get(1);
+        clonePlugin = new DuplicateTasksStepPlugin();
+        // duplicating steps does not touch the METS file
+        clonePlugin.setStore(new InMemoryDuplicationStore(prefs, resources.resolve("meta.xml")));
+        clonePlugin.initialize(process.getSchritte().get(0), "", prefs, propertyConfig);
+    }
+
+    /**
+     * split the property value the way the plugin did before PropertyValueSplitter existed, as reference
+     */
+    @Benchmark
+    public void splitWithRegex(Blackhole bh) {
+        for (String part : propertyValue.split(",")) {
+            bh.consume(part);
+        }
+    }
+
+    @Benchmark
+    public void split(Blackhole bh) {
+        for (String part : new PropertyValueSplitter(propertyValue, ",", false)) {
+            bh.consume(part);
+        }
+    }
+
+    @Benchmark
+    public void duplicateStep(Blackhole bh) {
+        for (int i = 1; i <= parts; ++i) {
+            bh.consume(clonePlugin.duplicateStep(template, TEMPLATE_TITLE + " [" + i + "]"));
+        }
+    }
+
+    @Benchmark
+    public PluginReturnValue runWithProperties(MetsFile metsFile) {
+        return run(propertyConfig, metsFile.path);
+    }
+
+    @Benchmark
+    public PluginReturnValue runWithMetadata(MetsFile metsFile) {
+        return run(metadataConfig, metsFile.path);
+    }
+
+    private PluginReturnValue run(DuplicateTasksConfiguration config, Path metsFile) {
+        Process process = createProcess();
+        DuplicateTasksStepPlugin plugin = new DuplicateTasksStepPlugin();
+        plugin.setStore(new InMemoryDuplicationStore(prefs, metsFile));
+        plugin.initialize(process.getSchritte().get(0), "", prefs, config);
+        return plugin.run();
+    }
+
+    private Process createProcess() {
+        Process process = new Process();
+        // no journal entries for process ids < 1
+        process.setId(0);
+        process.setTitel("benchmark");
+
+        List<GoobiProperty> processProperties = new ArrayList<>();
+        Processproperty property = new Processproperty();
+        property.setTitel(PROPERTY_NAME);
+        property.setWert(propertyValue);
+        property.setProzess(process);
+        processProperties.add(property);
+        process.setEigenschaften(processProperties);
+
+        Step pluginStep = createStep(process, "Split assets", 1);
+        Step templateStep = createStep(process, TEMPLATE_TITLE, 2);
+        process.setSchritte(new ArrayList<>(Arrays.asList(pluginStep, templateStep)));
+        return process;
+    }
+
+    private Step createStep(Process process, String title, int order) {
+        Step step = new Step();
+        step.setTitel(title);
+        step.setReihenfolge(order);
+        step.setProzess(process);
+        step.setBearbeitungsstatusEnum(StepStatus.LOCKED);
+        step.setEigenschaften(new ArrayList<>());
+        step.setBenutzer(new ArrayList<>());
+        step.setBenutzergruppen(new ArrayList<>());
+        return step;
+    }
+
+    private DuplicateTasksConfiguration createConfiguration(String content) throws Exception {
+        XMLConfiguration xml = new XMLConfiguration();
+        xml.setExpressionEngine(new XPathExpressionEngine());
+        xml.load(new StringReader("<config>" + content + "</config>"));
+        return new DuplicateTasksConfiguration(xml);
+    }
+
+    private static Path getResourcesFolder() {
+        String configured = System.getProperty("benchmark.resources");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path path = Paths.get("module-base/src/test/resources");
+        if (!Files.exists(path)) {
+            // started from within module-benchmark
+            path = Paths.get("../module-base/src/test/resources");
+        }
+        return path;
+    }
+
+    /**
+     * METS file of the runs. Runs with metadata write it back, so it is restored before each invocation, otherwise it would grow with every call.
+     */
+    @State(Scope.Thread)
+    public static class MetsFile {
+
+        private Path folder;
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            folder = Files.createTempDirectory("duplicate-tasks-benchmark");
+            path = folder.resolve("meta.xml");
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() throws IOException {
+            Path resources = getResourcesFolder();
+            Files.copy(resources.resolve("meta.xml"), path, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(resources.resolve("meta_anchor.xml"), folder.resolve("meta_anchor.xml"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}